@@ -2,37 +2,82 @@ package com.miolean.arena.entities;
 
 import com.miolean.arena.framework.Debug;
 import com.miolean.arena.framework.Option;
+import com.miolean.arena.genetics.GeneProfiler;
 import com.miolean.arena.ui.FieldDisplayPanel;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
-public class Arena {
+public class Arena implements AutoCloseable {
 
     private static final int MAX_ROBOTS = 32*16;
     private static final int MAX_COGS = 200*4;
-    public  static final int MAX_ENTITIES = 255*255;
+    private static final int MAX_POOLED = 1024;
+    public  static final int MAX_ENTITIES = EntityTable.MAX_SLOTS - 1;
     public  static final int TOP_LIST_LENGTH = 10;
     public static final int ARENA_SIZE = 4*1024;
     public static final int BORDER = 20*2;
 
-    private ConcurrentHashMap<Integer, Entity> entities;
+    private EntityTable entities;
+    //Everything in the arena as of the end of the last tick, for the UI. The table itself changes under anyone reading it from another thread.
+    private volatile List<Entity> shown = Collections.emptyList();
+    //Whether anyone has asked for shown yet (see shown()). Until then (Headless, Islands) it isn't worth keeping up to date.
+    private volatile boolean watched = false;
     private List<Robot> robots;
     private List<Cog> cogs;
-    private List<GeneticRobot> topRobots;
+    private Leaderboard topRobots;
+
+    //Spawns and despawns asked for while entities are being ticked or collided, carried out together once that's over.
+    private boolean deferring = false;
+    private List<Entity> spawns = new ArrayList<>();
+    private List<Entity> despawns = new ArrayList<>();
+
+    //Bullets and Cogs that have left, ready to be used again (see makeBullet() and makeCog()).
+    private final EntityPool<Bullet> bulletPool = new EntityPool<>("Bullet", MAX_POOLED, () -> new Bullet(this));
+    private final EntityPool<Cog> cogPool = new EntityPool<>("Cog", MAX_COGS, () -> new Cog(1, this));
+
+    private ForkJoinPool thinkPool;
+    private List<GeneticRobot> thinkers = new ArrayList<>();
+
+    //Where everything is as of the start of the think phase, for robots looking around (see nearest() and within()).
+    private final SpatialHash neighbors = new SpatialHash();
+
+    private MotionStore motion = new MotionStore();
+    private BroadPhase broadPhase = new SpatialHash();
+    private final BroadPhase.PairVisitor collider = this::collide;
 
     private int time = 0;
+    //Genome pages held by robots here (living or on the leaderboard) as of the last internPages(), and how many of those are different.
+    private int pageReferences = 0;
+    private int distinctPages = 0;
+
+    //Randomness: everything is derived from the seed, so the same seed always plays out the same way.
+    private final long seed;
+    private SplittableRandom random;
+    private int[] geneWeights;
 
     public Arena() {
-        entities = new ConcurrentHashMap<>();
+        this(System.nanoTime() ^ Option.random.nextLong());
+    }
+
+    public Arena(long seed) {
+        this.seed = seed;
+        this.random = randomFor(0);
+        geneWeights = new int[GeneticRobot.KMEM.length];
+        for(int i = 0; i < geneWeights.length; i++) {
+            if(GeneticRobot.KMEM[i] != null) geneWeights[i] = GeneticRobot.KMEM[i].getWeight();
+        }
+
+        entities = new EntityTable();
         robots = new ArrayList<>();
         cogs = new ArrayList<>();
-        topRobots = new ArrayList<>();
-        topRobots.add(new DefaultGeneticRobot(Option.class.getClassLoader().getResourceAsStream("gen/default.ergo"), this));
-        topRobots.get(0).setName("Dummy");
+        topRobots = new Leaderboard(Option.topListLength.getValue());
+        GeneticRobot dummy = new DefaultGeneticRobot(Option.class.getClassLoader().getResourceAsStream("gen/default.ergo"), this);
+        dummy.setName("Dummy");
+        topRobots.offer(dummy);
         Wall wall = new Wall(200, 10, 10, this);
         wall.setX(300);
         wall.setY(300);
@@ -43,103 +88,283 @@ public class Arena {
 
         long marker;
         time++;
+        random = randomFor(0);
+        GeneProfiler.setEnabled(Boolean.TRUE.equals(Option.profileGenes.getValue()));
         distribute();
 
+        //Phase one: every GeneticRobot runs its genes, in parallel. Nothing in the arena changes but the robots themselves.
+        marker = System.nanoTime();
+        think();
+        Debug.logTime("Think", System.nanoTime() - marker);
 
-        for(Entity e: entities.values()) {
+        //Phase two: move everything in one pass, then, one at a time, carry out what they decided.
+        marker = System.nanoTime();
+        motion.integrate();
+        Debug.logTime("Physics", System.nanoTime() - marker);
+
+        deferring = true;
+        for(Entity e: entities) {
 
             marker = System.nanoTime();
             e.tick();
             Debug.logTime("Tick", System.nanoTime() - marker);
+        }
+        flush();
+
+        //Only pairs the broadphase reports can possibly be touching.
+        marker = System.nanoTime();
+        chooseBroadPhase();
+        broadPhase.rebuild(entities);
+        Debug.logTime("Broadphase", System.nanoTime() - marker);
 
-            //Is it still alive?
-            if(entities.get(e.getUUID()) == null) continue;
+        marker = System.nanoTime();
+        broadPhase.forEachPair(collider);
+        flush();
+        deferring = false;
+        Debug.logTime("Intersect", System.nanoTime() - marker);
+
+        //Keep the leaderboard up to date. Dead Robots' fitness doesn't change, so only the living need looking at.
+        marker = System.nanoTime();
+        topRobots.setCapacity(Option.topListLength.getValue());
+        for(int i = 0; i < robots.size(); i++) {
+            if(! (robots.get(i) instanceof GeneticRobot)) continue;
+            GeneticRobot r = (GeneticRobot) robots.get(i);
+            if(topRobots.contains(r)) topRobots.update(r);
+            else if(r.getFitness() > 0) topRobots.offer(r);
+        }
+        Debug.logTime("Fitness", System.nanoTime() - marker);
 
+        //Every so often, swap everyone's pages for the shared copies (see PageTable).
+        if(time % PageTable.INTERVAL == 0) {
             marker = System.nanoTime();
-            for(Entity g: entities.values()) {
-                if(e != g && e.quickIntersects(g) && e.intersectsWith(g)) {
-                    e.intersect(g);
-                }
-            }
-            Debug.logTime("Intersect", System.nanoTime() - marker);
+            internPages();
+            Debug.logTime("Interning", System.nanoTime() - marker);
+        }
 
-            //Is it still alive?
-            if(entities.get(e.getUUID()) == null) continue;
+        if(GeneProfiler.isEnabled() && time % GeneProfiler.INTERVAL == 0) GeneProfiler.aggregate();
 
+        if(watched) shown = snapshot();
+    }
 
-            marker = System.nanoTime();
-            if(e instanceof GeneticRobot && ((GeneticRobot) e).getFitness() > 0 && (((GeneticRobot) e).getFitness() > topRobots.get(0).getFitness()) || e == topRobots.get(0)) {
-                GeneticRobot r = (GeneticRobot) e;
-                if(! topRobots.contains(r)) {
-                    topRobots.add(r);
-                }
-            }
-            Debug.logTime("Fitness", System.nanoTime() - marker);
+    private void internPages() {
+        Set<GeneticRobot> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<byte[]> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        int pages = 0;
+        for(Robot r: robots) {
+            if(r instanceof GeneticRobot && seen.add((GeneticRobot) r)) pages += ((GeneticRobot) r).internPages(distinct);
         }
-        marker = System.nanoTime();
-        Collections.sort(topRobots);
-        while(topRobots.size() > TOP_LIST_LENGTH) topRobots.remove(0);
-        for(int i = 0; i < topRobots.size(); i++) if(! topRobots.get(i).isAlive()) topRobots.get(i).setUUID(-(i+1+200));
-        Debug.logTime("Fitness", System.nanoTime() - marker);
+        for(int i = 0; i < topRobots.size(); i++) {
+            if(seen.add(topRobots.get(i))) pages += topRobots.get(i).internPages(distinct);
+        }
+        pageReferences = pages;
+        distinctPages = distinct.size();
+    }
+
+    //What the UI gets to see: who's here, where they are and their outlines (see Entity.capture()).
+    private List<Entity> snapshot() {
+        List<Entity> all = new ArrayList<>(entities.size());
+        for(Entity e: entities) {
+            e.capture();
+            all.add(e);
+        }
+        return Collections.unmodifiableList(all);
+    }
+
+    private List<Entity> shown() {
+        watched = true;
+        return shown;
+    }
+
+    private void think() {
+        for(Entity e: entities) e.publish();
+        neighbors.rebuild(entities);
+
+        thinkers.clear();
+        for(Robot r: robots) if(r instanceof GeneticRobot) thinkers.add((GeneticRobot) r);
+
+        int threads = Option.tickThreads.getValue();
+        if(threads <= 1 || thinkers.size() < 2) {
+            for(GeneticRobot r: thinkers) r.think();
+            return;
+        }
+
+        if(thinkPool == null || thinkPool.getParallelism() != threads) {
+            if(thinkPool != null) thinkPool.shutdown();
+            thinkPool = new ForkJoinPool(threads);
+        }
+        thinkPool.submit(() -> thinkers.parallelStream().forEach(GeneticRobot::think)).join();
+    }
+
+    //Let go of the threads robots think on. Anything that makes an Arena and then drops it should call this; the
+    //pool's workers would otherwise sit there for as long as the program runs. Ticking it again afterwards is
+    //fine, it just starts a new pool.
+    @Override
+    public void close() {
+        if(thinkPool != null) thinkPool.shutdown();
+        thinkPool = null;
+    }
+
+    //Narrowphase for a candidate pair. Intersection isn't symmetric (a Cog eats a Robot, not the other way around),
+    //so each side gets its own chance, as long as it's still around.
+    private void collide(Entity e, Entity g) {
+        if(!e.leaving && !g.leaving && e.quickIntersects(g) && e.intersectsWith(g)) e.intersect(g);
+        if(!g.leaving && !e.leaving && g.quickIntersects(e) && g.intersectsWith(e)) g.intersect(e);
+    }
+
+    private void chooseBroadPhase() {
+        boolean sweep = Boolean.TRUE.equals(Option.sweepAndPrune.getValue());
+        if(sweep && !(broadPhase instanceof SweepAndPrune)) broadPhase = new SweepAndPrune();
+        if(!sweep && !(broadPhase instanceof SpatialHash)) broadPhase = new SpatialHash();
     }
 
     public void renderAll(Graphics2D g) {
-        for(Entity e: entities.values()) {
-            e.renderBody(g, (int) e.getX(), (int) e.getY(), Entity.RENDER_LOW_QUALITY);
+        for(Entity e: shown()) {
+            Entity.View view = e.getView();
+            e.renderBody(g, (int) view.x, (int) view.y, Entity.RENDER_LOW_QUALITY);
         }
     }
 
     public void renderAll(Graphics2D g, Point mouse) {
 
-        for(Entity e: entities.values()) {
-            if(e.intersectsWith(new TrackerDot(mouse.x, mouse.y, 4, 1, this))) {
-                e.renderBody(g, (int) e.getX(), (int) e.getY(), (byte) (Entity.RENDER_GLOWING | Entity.RENDER_DECORATED));
-            } else e.renderBody(g, (int) e.getX(), (int) e.getY(), Entity.RENDER_DECORATED);
+        for(Entity e: shown()) {
+            Entity.View view = e.getView();
+            Polygon outline = view.outline;
+            if(outline.intersects(mouse.x - 2, mouse.y - 2, 4, 4)) {
+                e.renderBody(g, (int) view.x, (int) view.y, (byte) (Entity.RENDER_GLOWING | Entity.RENDER_DECORATED));
+            } else e.renderBody(g, (int) view.x, (int) view.y, Entity.RENDER_DECORATED);
             g.setColor(Color.blue);
-            g.drawPolygon(e.getBounds());
+            g.drawPolygon(outline);
         }
     }
 
+    //In the middle of a tick this only queues the Entity; it shows up once the current phase is over (see flush()).
     public void add(Entity e) {
+        if(deferring) spawns.add(e);
+        else spawn(e);
+    }
+
+    //Likewise. The Entity stops taking part in collisions straight away, though.
+    public void remove(Entity e) {
+        if(e == null || e.leaving) return;
+        e.leaving = true;
+        if(deferring) despawns.add(e);
+        else despawn(e);
+    }
+
+    //Carry out everything that was queued, departures first (so they make room).
+    private void flush() {
+        for(int i = 0; i < despawns.size(); i++) despawn(despawns.get(i));
+        despawns.clear();
+        for(int i = 0; i < spawns.size(); i++) spawn(spawns.get(i));
+        spawns.clear();
+    }
+
+    private void spawn(Entity e) {
 
         if(e instanceof Robot && robots.size() >= MAX_ROBOTS) return;
-        if(e instanceof Cog && cogs.size() >= MAX_COGS) return;
+        if(e instanceof Cog && cogs.size() >= MAX_COGS) {
+            release(e);
+            return;
+        }
 
         entities.remove(e.getUUID());
 
-        int uuid;
-        do { uuid = Option.random.nextInt(MAX_ENTITIES-1) + 1; //Don't select 0.
-        } while(entities.get(uuid) != null);
+        int uuid = entities.add(e);
+        if(uuid < 0) { //Full up
+            release(e);
+            return;
+        }
 
-        entities.put(uuid, e);
-        if(e instanceof Robot) robots.add((Robot)e);
-        if(e instanceof Cog) cogs.add((Cog)e);
+        if(e instanceof Robot) listAdd(robots, (Robot) e);
+        if(e instanceof Cog) listAdd(cogs, (Cog) e);
+        motion.attach(e);
+        e.leaving = false;
         e.appear(uuid);
     }
 
-    public void remove(Entity e) {
-        if(e instanceof Robot) {
-            robots.remove(e);
-        }
-        if(e instanceof Cog) cogs.remove(e);
+    private void despawn(Entity e) {
+        if(e instanceof Robot) listRemove(robots, (Robot) e);
+        if(e instanceof Cog) listRemove(cogs, (Cog) e);
         entities.remove(e.getUUID());
+        motion.detach(e);
+        release(e);
+    }
+
+    //A Bullet or Cog from the pool, set up as if it had just been made.
+    Bullet makeBullet(Robot source) {
+        Bullet bullet = bulletPool.obtain();
+        bullet.recycle(1);
+        return bullet.init(source);
+    }
+    Cog makeCog(int value) {
+        Cog cog = cogPool.obtain();
+        cog.recycle(1);
+        return cog.init(value);
+    }
+
+    //Nothing in the arena remembers an Entity that's left it (UUIDs stop finding it), so Bullets and Cogs can go back in the pool.
+    private void release(Entity e) {
+        if(e instanceof Bullet) bulletPool.release((Bullet) e);
+        else if(e instanceof Cog) cogPool.release((Cog) e);
+    }
+
+    //robots and cogs remember where everyone is in them, so taking something out is a swap with the last one.
+    private static <T extends Entity> void listAdd(List<T> list, T e) {
+        if(e.listIndex >= 0 && e.listIndex < list.size() && list.get(e.listIndex) == e) return;
+        e.listIndex = list.size();
+        list.add(e);
+    }
+    private static <T extends Entity> void listRemove(List<T> list, T e) {
+        int index = e.listIndex;
+        if(index < 0 || index >= list.size() || list.get(index) != e) return;
+        T last = list.remove(list.size() - 1);
+        if(last != e) {
+            list.set(index, last);
+            last.listIndex = index;
+        }
+        e.listIndex = -1;
     }
 
     public void remove(int uuid) { remove(fromUUID(uuid)); }
 
     public Entity fromUUID(int uuid) {
-        if(uuid < 0) return topRobots.get(uuid*-1-200-1);
+        if(uuid < 0) return topRobots.fromAlias(uuid);
         return entities.get(uuid);
     }
+
+    //A UUID that finds this Entity through fromUUID(): its own while it's in the arena, or its leaderboard alias once it's gone.
+    public int handleOf(Entity e) {
+        if(entities.get(e.getUUID()) == e) return e.getUUID();
+        if(e instanceof GeneticRobot && topRobots.contains((GeneticRobot) e)) return topRobots.aliasOf((GeneticRobot) e);
+        return e.getUUID();
+    }
+    //Genes only have two bytes for a UUID, so they get a handle instead. See EntityTable.handleOf().
     public Entity fromUUID(int great, int less) {
-        return entities.get(great * 255 + less);
+        return entities.fromHandle((great << 8) | less);
     }
 
-    public Entity atLocation(int x, int y) {
-        TrackerDot location = new TrackerDot(x, y, 4,0,this);
+    //What's around a point, as of the start of this tick's think phase. Safe to ask from several robots' threads at once.
+    //type narrows it down to one kind of Entity (Entity.class for anything); exclude is usually whoever is asking.
+    public void within(double x, double y, double radius, Class<? extends Entity> type, Entity exclude, List<Entity> into) {
+        neighbors.within(x, y, radius, type, exclude, into);
+    }
+    //The k closest, closest first.
+    public void nearest(double x, double y, double radius, int k, Class<? extends Entity> type, Entity exclude, List<Entity> into) {
+        neighbors.nearest(x, y, radius, k, type, exclude, into);
+    }
 
-        for(Entity e: entities.values()) {
-            if(e != null && e.intersectsWith(location)) return e;
+    //What's in a cone either side of the direction (dx, dy), and the first thing straight along it.
+    public void inCone(double x, double y, double dx, double dy, double halfAngle, double range, Class<? extends Entity> type, Entity exclude, List<Entity> into) {
+        neighbors.inCone(x, y, dx, dy, halfAngle, range, type, exclude, into);
+    }
+    public Entity rayCast(double x, double y, double dx, double dy, double range, Class<? extends Entity> type, Entity exclude) {
+        return neighbors.rayCast(x, y, dx, dy, range, type, exclude);
+    }
+
+    public Entity atLocation(int x, int y) {
+        //Not intersectsWith(): that's the arena thread's, and this runs on the event thread.
+        for(Entity e: shown()) {
+            if(e != null && e.getBounds().intersects(x - 2, y - 2, 4, 4)) return e;
         }
         return null;
     }
@@ -150,38 +375,82 @@ public class Arena {
 
         if(html.contains("ergo_uuid_")) {
             html = html.replaceAll("ergo_uuid_", "");
-            return fromUUID(Integer.parseInt(html));
+            int uuid = Integer.parseInt(html);
+            if(uuid < 0) return fromUUID(uuid);
+            for(Entity e: shown()) if(e.getUUID() == uuid) return e; //Links are clicked on the event thread, so not straight from the table
         }
         return null;
     }
 
     public void distribute() {
 
-        if(Option.random.nextFloat() < 0.05) {
-            Cog cog = new Cog(5 + (int) (10 * Option.random.nextFloat()), this);
-            cog.setX(Option.random.nextFloat() * ARENA_SIZE);
-            cog.setY(Option.random.nextFloat() * ARENA_SIZE);
-            cog.setR(Option.random.nextFloat() * ARENA_SIZE);
+        if(random.nextDouble() < 0.05) {
+            Cog cog = makeCog(5 + (int) (10 * random.nextDouble()));
+            cog.setX(random.nextDouble() * ARENA_SIZE);
+            cog.setY(random.nextDouble() * ARENA_SIZE);
+            cog.setR(random.nextDouble() * ARENA_SIZE);
             add(cog);
         }
 
-        if(Option.random.nextFloat() < 0.01) {
+        if(random.nextDouble() < 0.01) {
             Robot robot;
-            robot = new DefaultGeneticRobot(getTopRobots().get(Option.random.nextInt(getTopRobots().size())), this);
+            robot = new DefaultGeneticRobot(topRobots.get(random.nextInt(topRobots.size())), this);
 
-            robot.setX(Option.random.nextFloat() * ARENA_SIZE);
-            robot.setY(Option.random.nextFloat() * ARENA_SIZE);
-            robot.setR(Option.random.nextFloat() * ARENA_SIZE);
+            robot.setX(random.nextDouble() * ARENA_SIZE);
+            robot.setY(random.nextDouble() * ARENA_SIZE);
+            robot.setR(random.nextDouble() * ARENA_SIZE);
             add(robot);
         }
     }
 
-    public ConcurrentHashMap<Integer, Entity> getEntities() { return entities;}
-    public List<GeneticRobot> getTopRobots() { return topRobots;}
+    //A fresh random stream for one owner (an Entity's UUID; 0 is the arena itself) at the current tick.
+    //It depends on nothing but the seed, the owner and the time, so it doesn't matter which thread asks or when.
+    SplittableRandom randomFor(long owner) {
+        return new SplittableRandom(mix(mix(seed + owner * 0x9E3779B97F4A7C15L) + time));
+    }
+
+    //A hash of everything that matters about the state of the arena. Two runs from the same seed should always agree.
+    public long stateHash() {
+        List<Entity> sorted = new ArrayList<>(entities.size());
+        for(Entity e: entities) sorted.add(e);
+        sorted.sort(Comparator.comparingInt(Entity::getUUID));
+
+        long hash = mix(seed + time);
+        for(Entity e: sorted) hash = mix(hash ^ e.stateHash());
+        return hash;
+    }
+
+    //Scrambles the bits of a long (the finalizer from SplittableRandom/MurmurHash3).
+    static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    public EntityTable getEntities() { return entities;}
+    //What getEntities() had in it at the end of the last tick. This is the one to use from any thread but the arena's own.
+    public List<Entity> getShownEntities() { return shown(); }
+    //Take a copy of a Robot from some other arena as breeding stock. The copy never enters this arena itself,
+    //only the leaderboard, where it competes on the fitness it earned at home.
+    public void immigrate(GeneticRobot r) {
+        topRobots.offer(r.copyInto(this));
+    }
+
+    //The leaderboard, best last. This is a copy; see getLeaderboard() for the real thing.
+    public List<GeneticRobot> getTopRobots() { return topRobots.toSortedList();}
+    public Leaderboard getLeaderboard() { return topRobots; }
     public List<Robot> getRobots() { return robots;}
     public List<Cog> getCogs() { return cogs;}
 
+    //Every page past the first of its kind is one the PageTable saved storing again.
+    public int getPageReferences() { return pageReferences; }
+    public int getDistinctPages() { return distinctPages; }
+
     public int getTime() {
         return time;
     }
+    public long getSeed() { return seed; }
+    SplittableRandom getRandom() { return random; }
+    //Gene weights, as tweaked by _TWK. They belong to the arena so that separate runs can't leak into each other.
+    public int[] getGeneWeights() { return geneWeights; }
 }
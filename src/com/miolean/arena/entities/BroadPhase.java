@@ -0,0 +1,19 @@
+package com.miolean.arena.entities;
+
+/**
+ * Finds the pairs of Entities that are close enough that they might be intersecting,
+ * so the (expensive) narrowphase doesn't have to look at every pair in the arena.
+ * Implementations must be conservative: a pair that isn't reported must not intersect.
+ */
+public interface BroadPhase {
+
+    //Bring the structure up to date with the current positions of every Entity in the arena.
+    void rebuild(Iterable<Entity> all);
+
+    //Call the visitor once for every candidate pair; (a, b) and (b, a) count as the same pair.
+    void forEachPair(PairVisitor visitor);
+
+    interface PairVisitor {
+        void visit(Entity a, Entity b);
+    }
+}
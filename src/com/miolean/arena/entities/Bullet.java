@@ -3,7 +3,8 @@ package com.miolean.arena.entities;
 import com.miolean.arena.framework.Option;
 
 import java.awt.*;
-import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.miolean.arena.entities.Arena.ARENA_SIZE;
 import static com.miolean.arena.entities.Arena.BORDER;
@@ -13,40 +14,60 @@ public class Bullet extends Entity {
     private static final int ROGUE_SPEED = 8;
     private static final int SIZE = 8;
     private static final double ROGUE_TURN_SPEED = 0.1;
-    private static final int ROGUE_OBSERVATION = 100;
+    private static final double ROGUE_RANGE = ARENA_SIZE * 1.5; //Corner to corner
+    private static final double RADIUS = SIZE / 2.0;
 
-    private Robot source;
-    private Robot target;
+    //UUIDs rather than references: once a Robot leaves the arena these stop finding it. 0 means nobody.
+    private int source;
+    private int target;
     private int damage;
 
+    //Where along its path this Bullet hit whatever intersectsWith() last found, for intersect() to move it there.
+    private double impact;
+
+    //Scratch space for a rogue Bullet looking for a target.
+    private List<Entity> nearby;
+
     public Bullet(Robot source, Arena arena) {
         super(SIZE, SIZE, 1, arena);
-        this.source = source;
+        init(source);
+    }
+
+    //A blank Bullet for the pool. Unlike a rogue one it doesn't touch the arena's random stream.
+    Bullet(Arena arena) {
+        super(SIZE, SIZE, 1, arena);
+    }
+
+    //Aim a Bullet, new or pooled (see Arena.makeBullet()), from its source, or drop it somewhere at random if it's rogue.
+    Bullet init(Robot source) {
+        this.source = (source == null)? 0: source.getUUID();
+        this.target = 0;
 
         if(source != null) {
             setX(source.getX());
             setY(source.getY());
             while(intersectsWith(source)) applyPhysics();
             damage = source.stats[Robot.STAT_DAMAGE].val();
-            setVelX((15 + source.stats[Robot.STAT_BULLET_SPEED].val()) * Math.cos(source.getR() + source.stats[Robot.STAT_BULLET_SPREAD].val() / 128.0 * (Option.random.nextFloat() - .5)));
-            setVelY((15 + source.stats[Robot.STAT_BULLET_SPEED].val()) * -Math.sin(source.getR() + source.stats[Robot.STAT_BULLET_SPREAD].val() / 128.0 * (Option.random.nextFloat() - .5)));
+            setVelX((15 + source.stats[Robot.STAT_BULLET_SPEED].val()) * Math.cos(source.getR() + source.stats[Robot.STAT_BULLET_SPREAD].val() / 128.0 * (source.getRandom().nextDouble() - .5)));
+            setVelY((15 + source.stats[Robot.STAT_BULLET_SPEED].val()) * -Math.sin(source.getR() + source.stats[Robot.STAT_BULLET_SPREAD].val() / 128.0 * (source.getRandom().nextDouble() - .5)));
         } else {
-            setX(ARENA_SIZE * Option.random.nextFloat());
-            setY(ARENA_SIZE * Option.random.nextFloat());
+            setX(ARENA_SIZE * getArena().getRandom().nextDouble());
+            setY(ARENA_SIZE * getArena().getRandom().nextDouble());
             damage = 5;
         }
 
         setMass(3);
+        return this;
     }
 
 
     @Override
     public void renderBody(Graphics g, int x, int y, byte flags) {
 
-        if(target != null || source != null) g.setColor(new Color(100 + damage / 2, 150 - damage / 2, 50));
+        if(target != 0 || source != 0) g.setColor(new Color(100 + damage / 2, 150 - damage / 2, 50));
         else g.setColor(new Color(100, 100, 255));
 
-        if(source != null) {
+        if(source != 0) {
             g.fillOval( x - SIZE / 2,  y - SIZE / 2, SIZE, SIZE);
             g.setColor(Color.black);
             g.drawOval( x - SIZE / 2,  y - SIZE / 2, SIZE, SIZE);
@@ -87,58 +108,53 @@ public class Bullet extends Entity {
     @Override
     public boolean intersectsWith(Entity e) {
         if( e instanceof TrackerDot) return false;
-        if(e == null || e == source || (e instanceof Bullet && ((Bullet) e).source == source)) return false; //Don't interact with your own source
-        if(super.intersectsWith(e)) return true;
+        if(e == null || e.getUUID() == source || (e instanceof Bullet && ((Bullet) e).source == source)) return false; //Don't interact with your own source
+
+        impact = timeOfImpact(e);
+        return impact <= 1;
+    }
 
-        //This is going to be tedious if we don't make up some shorthands.
-        //I know, memory usage and so forth, but it'll be OK
+    //How far along its next move (0 to 1) this Bullet first runs into e, or NarrowPhase.NO_IMPACT if it misses.
+    //Bullets move far enough in a tick to jump clean over a Robot, so they look at the whole path, not where they are.
+    double timeOfImpact(Entity e) {
         double x = getX();
         double y = getY();
-        double velX = getVelX();
-        double velY = getVelY();
-        double accX = getAccX();
-        double accY = getAccY();
+        double dx = getVelX() + getAccX();
+        double dy = getVelY() + getAccY();
 
-        Rectangle extendedBounds = new Rectangle(new Point((int)x, (int)y));
-        extendedBounds.add(new Point((int) (x+velX+accX), (int) (y+velY+accY)));
-        extendedBounds.setLocation((int) (extendedBounds.getX() - e.getWidth()), (int) (extendedBounds.getY() - e.getHeight()));
-        extendedBounds.setSize((int) (extendedBounds.getWidth() + 2*e.getWidth()), (int) (extendedBounds.getHeight() + 2*e.getHeight()));
-
-        if(extendedBounds.contains(new Point2D.Double(e.getX(), e.getY()))) {
-            double slope = (velY + accY) / (velX + accX);
-
-            double k = y - slope * x;
-
-            double a = e.getX() - (e.getY()-k)/slope;
-            double b = e.getY() - e.getX()*slope - k;
-            double g2 = (a*a*b*b) / (a*a + b*b);
-
-            if(g2 < (SIZE/2 + e.getWidth()/2)*(SIZE/2 + e.getWidth()/2)) {
-                return true;
-            }
-
-        }
-
-        return false;
+        Bounds theirs = e.bounds();
+        if(theirs.radius > 0) return NarrowPhase.sweepCircle(x, y, dx, dy, RADIUS, theirs.x, theirs.y, theirs.radius);
+        return NarrowPhase.sweepPolygon(x, y, dx, dy, RADIUS, theirs.xpoints, theirs.ypoints, theirs.npoints);
     }
 
+    @Override
+    double getCollisionRadius() { return RADIUS; }
 
-    //Unfortunately there's no quick way to fill in the skips for bullets
+    //The broadphase only pairs a Bullet with things near its path (see below), which is all the filtering it needs.
     @Override
     public boolean quickIntersects(Entity e) {return true;}
 
+    //Bullets check ahead along their path (see intersectsWith), so the broadphase has to cover that too.
     @Override
-    public void update() {
+    double getMinX() { return Math.min(getX(), getX() + getVelX() + getAccX()) - SIZE; }
+    @Override
+    double getMinY() { return Math.min(getY(), getY() + getVelY() + getAccY()) - SIZE; }
+    @Override
+    double getMaxX() { return Math.max(getX(), getX() + getVelX() + getAccX()) + SIZE; }
+    @Override
+    double getMaxY() { return Math.max(getY(), getY() + getVelY() + getAccY()) + SIZE; }
 
-        applyPhysics();
+    @Override
+    public void update() {
 
-        if(target != null && target.getHealth() <= 0) target = null;
-        if(source != null && source.getHealth() <= 0) source = null;
+        Robot target = robot(this.target);
+        if(target == null || target.getHealth() <= 0) this.target = 0;
+        if(robot(source) == null || robot(source).getHealth() <= 0) source = 0;
 
-        if(source != null) {
+        if(source != 0) {
             if (Math.abs(getVelX()) < 1 && Math.abs(getVelY()) < 1) getArena().remove(getUUID());
             if ((getX() > ARENA_SIZE - BORDER) || (getX() < BORDER) || (getY() > ARENA_SIZE - BORDER) || (getY() < BORDER)) getArena().remove(getUUID());
-        } else if(target != null){
+        } else if(this.target != 0){
             double xdis = target.getX() - getX();
             double ydis = target.getY() - getY();
 
@@ -157,39 +173,34 @@ public class Bullet extends Entity {
 
             forward(ROGUE_SPEED);
 
-            //Meanwhile, look for closer targets
-
-            for(int i = 0; i < ROGUE_OBSERVATION; i++) {
-
-                Entity attemptedTarget = getArena().fromUUID(Option.random.nextInt(Arena.MAX_ENTITIES));
-
-                if (attemptedTarget != null && attemptedTarget instanceof Robot) {
-                    double axdis = attemptedTarget.getX() - getX();
-                    double aydis = attemptedTarget.getY() - getY();
-
-                    if(axdis*axdis + aydis*aydis < xdis*xdis + ydis*ydis) {
-                        target = (Robot) attemptedTarget;
-                    }
-                }
-            }
+            //Meanwhile, every so often, look for closer targets
+            if(getAge() % Option.rogueRetarget.getValue() == 0) findTarget();
 
         } else {
 
             setVelR(0.1);
-
-            for(int i = 0; i < ROGUE_OBSERVATION; i++){
-                Entity attemptedTarget = getArena().fromUUID(Option.random.nextInt(Arena.MAX_ENTITIES));
-                if(attemptedTarget != null && attemptedTarget instanceof Robot) {
-                    target = (Robot) attemptedTarget;
-                    System.out.println("Found target");
-                }
-            }
+            if(getAge() % Option.rogueRetarget.getValue() == 0) findTarget();
         }
     }
 
+    //Home in on whichever Robot is closest. The arena's neighbor grid is as of the start of the tick, which is close enough.
+    private void findTarget() {
+        if(nearby == null) nearby = new ArrayList<>(1);
+        getArena().nearest(getX(), getY(), ROGUE_RANGE, 1, Robot.class, this, nearby);
+        if(! nearby.isEmpty()) target = nearby.get(0).getUUID();
+        nearby.clear();
+    }
+
     @Override
     public void intersect(Entity e) {
 
+        //Meet it where it was hit rather than from however far back up the path.
+        if(impact > 0 && impact <= 1) {
+            setX(getX() + impact * (getVelX() + getAccX()));
+            setY(getY() + impact * (getVelY() + getAccY()));
+        }
+        impact = 0;
+
         repel(e);
         if(! (e instanceof Cog)) e.damage(damage);
         if(! (e instanceof Wall)) damage(1);
@@ -209,14 +220,20 @@ public class Bullet extends Entity {
     public String toHTML() {
         String result = "";
 
-        if(source != null) {
-            result += "<font color=\"red\">" + source.getName() + "'s Bullet";
+        if(robot(source) != null) {
+            result += "<font color=\"red\">" + robot(source).getName() + "'s Bullet";
         } else {
             result += "<font color=\"maroon\">Rogue Bullet";
         }
         return result;
     }
 
+    //The Robot behind a UUID, if it's still in the arena.
+    private Robot robot(int uuid) {
+        Entity e = getArena().fromUUID(uuid);
+        return (e instanceof Robot)? (Robot) e: null;
+    }
+
     @Override
     public Polygon getBaseBounds() {
         return new Polygon(
@@ -12,8 +12,16 @@ public class Cog extends Entity {
 
     public Cog(int value, Arena arena) {
         super((int) (5*Math.sqrt(value)), (int) (5*Math.sqrt(value)), 1, arena);
+        init(value);
+    }
+
+    //Size a Cog, new or pooled (see Arena.makeCog()), by what it's worth.
+    Cog init(int value) {
         this.value = value;
+        setWidth((int) (5*Math.sqrt(value)));
+        setHeight((int) (5*Math.sqrt(value)));
         setMass(Math.sqrt(value));
+        return this;
     }
 
     @Override
@@ -32,9 +40,12 @@ public class Cog extends Entity {
 
     @Override
     public void update() {
-        applyPhysics();
     }
 
+    //Cogs are small enough that a circle does as well as their square, for a lot less work.
+    @Override
+    double getCollisionRadius() { return getWidth() / 2.0; }
+
 //    @Override
 //    public boolean intersectsWith(Entity e) {
 //        long marker = System.nanoTime();
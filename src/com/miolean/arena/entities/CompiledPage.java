@@ -0,0 +1,62 @@
+package com.miolean.arena.entities;
+
+import com.miolean.arena.genetics.Gene;
+
+/**
+ * A page of P or U memory turned into a JVM method of its own (see PageCompiler), for programs that
+ * run often enough to be worth it. Each instruction becomes a direct call to its gene with the arguments
+ * as constants, so the JIT can inline the genes into each other and see through jumps the way it would
+ * in hand-written code.
+ *
+ * run() does exactly what that many turns of runGenes()'s loop would, cog costs and all, and hands back to
+ * the interpreter for everything it doesn't cover: leaving the page, running out of cogs, a gene throwing,
+ * a store() into program memory, or a jump to somewhere it has no code for.
+ *
+ * This is public only because the generated classes live in class loaders of their own (so they can be
+ * unloaded with the pages they were made from), and only see what's public or protected here.
+ */
+public abstract class CompiledPage {
+
+    protected CompiledPage() {}
+
+    //Carry on from robot.index on page [number] until handing back. False if there's no code for that index at all.
+    public abstract boolean run(GeneticRobot robot, int number);
+
+    //Used by the generated code in place of the fields it can't reach.
+
+    protected static int index(GeneticRobot robot) {
+        return robot.index;
+    }
+
+    protected static int writes(GeneticRobot robot) {
+        return robot.programWrites;
+    }
+
+    //The top of runGenes()'s loop: true means out of cogs.
+    protected static boolean enter(GeneticRobot robot, int at) {
+        if(robot.getCogs() < 0) return true;
+        robot.index = at;
+        return false;
+    }
+
+    protected static void skip(GeneticRobot robot, int to) {
+        robot.index = to;
+    }
+
+    //The bottom of the loop, after a gene ran: where to go next, or -1 to hand back to the interpreter.
+    protected static int advance(GeneticRobot robot, double cost, int step, int number, int writes) {
+        robot.setCogs(robot.getCogs() - cost);
+        robot.index += step;
+        if(robot.loaded != number || robot.programWrites != writes) return -1;
+        return robot.index;
+    }
+
+    //A gene threw: charged and passed over, as in runGenes(), before handing back.
+    protected static void failed(GeneticRobot robot, RuntimeException e, int opcode, int step) {
+        Gene gene = GeneticRobot.KMEM[opcode];
+        System.err.println("Error when running gene " + gene + " with " + gene.getNumParameters() + " parameters");
+        e.printStackTrace();
+        robot.setCogs(robot.getCogs() - gene.getCost());
+        robot.index += step;
+    }
+}
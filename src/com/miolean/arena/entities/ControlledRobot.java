@@ -24,7 +24,6 @@ public class ControlledRobot extends Robot {
 
     @Override
     public void update() {
-        applyPhysics();
         if(KEY[KEY_W]) forward(100);
         else if(KEY[KEY_S]) forward(-100);
         else forward(0);
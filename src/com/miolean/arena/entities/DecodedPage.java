@@ -0,0 +1,96 @@
+package com.miolean.arena.entities;
+
+import com.miolean.arena.genetics.Gene;
+
+import static com.miolean.arena.framework.UByte.val;
+
+/**
+ * A page of P or U memory already read as instructions, so runGenes() doesn't have to look up the
+ * opcode, count its arguments and pull them out of the page again every single tick. There's a record
+ * for every address, not just the ones the program starts on, since a jump can land anywhere.
+ *
+ * Each record is the gene, how many arguments it's called with and what they are, and how far to move
+ * on afterwards. A stretch that doesn't do anything is one record: opcodes with no gene are skipped in
+ * one go, and so is a gene that's marked idempotent, costs nothing, and is simply repeated. Empty memory is all zeroes, which is exactly
+ * that (opcode 0 with argument 0 over and over), so a mostly empty page runs about as fast as a short one.
+ *
+ * A decoded page only matches the bytes it was made from. Whoever changes those has to throw it away;
+ * GeneticRobot does that in store().
+ */
+final class DecodedPage {
+
+    //The gene still costs, but isn't called: it didn't have room on the page for its arguments.
+    static final byte NO_CALL = -1;
+
+    final byte[] source;
+    final Gene[] genes;
+    final int[] steps;
+    final byte[] arities;
+    final int[] args;
+
+    //Set once the bytes have changed underneath it, for whoever is still running from it.
+    boolean stale = false;
+
+    //How many times a program has started on this page, and what it was compiled to once that got high enough
+    //(the PageTable keeps that; this is just where runGenes() can get at it quickly).
+    int runs = 0;
+    CompiledPage compiled;
+
+    private DecodedPage(byte[] source) {
+        this.source = source;
+        int length = source.length;
+        genes = new Gene[length];
+        steps = new int[length];
+        arities = new byte[length];
+        args = new int[length * 3];
+    }
+
+    private DecodedPage(byte[] source, DecodedPage decoded) {
+        this.source = source;
+        genes = decoded.genes;
+        steps = decoded.steps;
+        arities = decoded.arities;
+        args = decoded.args;
+        runs = decoded.runs;
+        compiled = decoded.compiled;
+    }
+
+    //The same instructions for a copy of the page. The records are never changed once decoded, so they can be shared.
+    DecodedPage sharedWith(byte[] copy) {
+        return new DecodedPage(copy, this);
+    }
+
+    static DecodedPage decode(byte[] page, Gene[] kmem) {
+        DecodedPage result = new DecodedPage(page);
+        int length = page.length;
+
+        //Back to front, so every stretch that can be skipped already knows where it ends.
+        for(int at = length - 1; at >= 0; at--) {
+            Gene gene = kmem[val(page[at])];
+            result.genes[at] = gene;
+
+            if(gene == null) {
+                result.steps[at] = (at + 1 < length && result.genes[at + 1] == null)? 1 + result.steps[at + 1] : 1;
+                continue;
+            }
+
+            int n = gene.getNumParameters();
+            result.arities[at] = (at + n < length)? (byte) n : NO_CALL;
+            for(int i = 0; i < n && at + 1 + i < length; i++) result.args[at*3 + i] = val(page[at + 1 + i]);
+            result.steps[at] = 1 + n;
+
+            int next = at + 1 + n;
+            if(next < length && result.repeats(at, next)) result.steps[at] += result.steps[next];
+        }
+        return result;
+    }
+
+    //Whether the instruction at [next] is the one at [at] all over again, and running it twice is no different to once.
+    private boolean repeats(int at, int next) {
+        Gene gene = genes[at];
+        if(genes[next] != gene || !gene.isIdempotent() || gene.getCost() != 0) return false;
+        if(arities[at] == NO_CALL || arities[next] == NO_CALL) return false;
+        for(int i = 0; i < arities[at]; i++) if(args[at*3 + i] != args[next*3 + i]) return false;
+        return true;
+    }
+}
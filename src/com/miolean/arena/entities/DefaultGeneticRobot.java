@@ -6,9 +6,12 @@ import com.miolean.arena.genetics.Immed;
 
 import java.awt.*;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.miolean.arena.entities.Arena.ARENA_SIZE;
-import static com.miolean.arena.framework.UByte.ub;
+import static com.miolean.arena.framework.UByte.clamp;
+import static com.miolean.arena.framework.UByte.val;
 
 
 @SuppressWarnings("unused")
@@ -26,9 +29,17 @@ public class DefaultGeneticRobot extends GeneticRobot {
     static final int TYPE_WALL = 0x12;
 
 
+    static final int VIEW_SCALE = 5; //Pixels per unit of viewDistance
+
     //This should really be an Option
     static final int MAX_STACK_SIZE = 16;
 
+    //Gene weights are shared by the whole arena, so _TWK changes wait for applyIntents(). (x: gene, y: weight)
+    private List<Point> tweaks = new ArrayList<>();
+
+    //Scratch space for what the sensing genes see.
+    private List<Entity> seen = new ArrayList<>();
+
 
     public DefaultGeneticRobot(GeneticRobot parent, Arena arena) {
         super(parent, arena);
@@ -36,6 +47,16 @@ public class DefaultGeneticRobot extends GeneticRobot {
     public DefaultGeneticRobot(InputStream file, Arena arena) {
         super(file, arena);
     }
+    DefaultGeneticRobot(Arena arena, GeneticRobot original) {
+        super(arena, original);
+    }
+
+    @Override
+    void applyIntents() {
+        super.applyIntents();
+        for(Point tweak: tweaks) getArena().getGeneWeights()[tweak.x] = tweak.y;
+        tweaks.clear();
+    }
 
     private int typeOf(Entity entity) {
         //It's sort of fun to uncomment these as I add new stuff.
@@ -59,7 +80,7 @@ public class DefaultGeneticRobot extends GeneticRobot {
     public void _NO () {} //"Nothing" that is registered as gene #0 (which is the default value)
     public void _SNO() {} //"Nothing" that is registered as gene #1 (not the default value and therefore an actual gene)
     public void _PRINT(int arg0, int arg1, int arg2) {
-        //System.out.printf("%s says: %s, %s, %s.\n", getName(), WMEM[arg0].val(), WMEM[arg1].val(), WMEM[arg2].val());
+        //System.out.printf("%s says: %s, %s, %s.\n", getName(), val(WMEM[arg0]), val(WMEM[arg1]), val(WMEM[arg2]));
     }
 
     //TODO Implement test commands after we can disable selected genes
@@ -68,11 +89,11 @@ public class DefaultGeneticRobot extends GeneticRobot {
     public void _HURT() {}
 
     @GeneCommand(args=1, weight=40, cost=0.2)
-    public void _GOTO (int reg) {index = WMEM[reg].val() - 2;}
+    public void _GOTO (int reg) {index = val(WMEM[reg]) - 2;}
     @GeneCommand(args=1, weight=40, cost=0.2)
-    public void _GOE  (int reg) {if(equalFlag) index = WMEM[reg].val() - 2;}
+    public void _GOE  (int reg) {if(equalFlag) index = val(WMEM[reg]) - 2;}
     @GeneCommand(args=1, weight=40, cost=0.2)
-    public void _GOG  (int reg) {if(greaterFlag) index = WMEM[reg].val() - 2;}
+    public void _GOG  (int reg) {if(greaterFlag) index = val(WMEM[reg]) - 2;}
     @GeneCommand(args=1, weight=50, cost=0.2)
     public void _IGOTO(@Immed int immed) {index = immed - 2;}
     @GeneCommand(args=1, weight=50, cost=0.2)
@@ -82,34 +103,34 @@ public class DefaultGeneticRobot extends GeneticRobot {
 
     @GeneCommand(weight=70, cost=0.0, args=2)
     public void _COMP (int reg1, int reg2) {
-        equalFlag = (WMEM[reg1].val() == WMEM[reg2].val());
-        greaterFlag = (WMEM[reg1].val() > WMEM[reg2].val());
+        equalFlag = (val(WMEM[reg1]) == val(WMEM[reg2]));
+        greaterFlag = (val(WMEM[reg1]) > val(WMEM[reg2]));
     }
     @GeneCommand(weight=70, cost=0.0, args=2)
     public void _ICOMP (int reg, @Immed int immed) {
-        equalFlag = (WMEM[reg].val() == immed);
-        greaterFlag = (WMEM[reg].val() > immed);
+        equalFlag = (val(WMEM[reg]) == immed);
+        greaterFlag = (val(WMEM[reg]) > immed);
     }
 
     //TODO Assign weights to the run commands (and make sure they actually work)
     public void _RUN (int reg) {
-        if(stack.size() < MAX_STACK_SIZE && CURRENT[WMEM[reg].val()] != null) {
+        if(stack.size() < MAX_STACK_SIZE && CURRENT[val(WMEM[reg])] != null) {
             stack.push(new Point(loaded, index));
-            loaded = WMEM[reg].val();
+            loaded = val(WMEM[reg]);
             index = 0;
         }
     }
     public void _RUNE  (int reg) {
-        if(stack.size() < MAX_STACK_SIZE && equalFlag && CURRENT[WMEM[reg].val()] != null) {
+        if(stack.size() < MAX_STACK_SIZE && equalFlag && CURRENT[val(WMEM[reg])] != null) {
             stack.push(new Point(loaded, index));
-            loaded = WMEM[reg].val();
+            loaded = val(WMEM[reg]);
             index = 0;
         }
     }
     public void _RUNG  (int reg) {
-        if(stack.size() < MAX_STACK_SIZE && greaterFlag && CURRENT[WMEM[reg].val()] != null) {
+        if(stack.size() < MAX_STACK_SIZE && greaterFlag && CURRENT[val(WMEM[reg])] != null) {
             stack.push(new Point(loaded, index));
-            loaded = WMEM[reg].val();
+            loaded = val(WMEM[reg]);
             index = 0;
         }
     }
@@ -142,64 +163,64 @@ public class DefaultGeneticRobot extends GeneticRobot {
     }
     @GeneCommand(weight=150, cost=0, args=3)
     public void _SSTO (int targSMemReg, int targAddrReg, int sourceReg) {
-        if(SMEM[WMEM[targSMemReg].val()] != null) {
-            SMEM[WMEM[targSMemReg].val()][WMEM[targAddrReg].val()] = WMEM[sourceReg];
+        if(SMEM[val(WMEM[targSMemReg])] != null) {
+            store(SMEM, val(WMEM[targSMemReg]), val(WMEM[targAddrReg]), WMEM[sourceReg]);
         }
     }
     @GeneCommand(weight=50, cost=0.01, args=3)
     public void _PSTO (int targPMemReg, int targAddrReg, int sourceReg) {
-        if(PMEM[WMEM[targPMemReg].val()] != null) {
-            PMEM[WMEM[targPMemReg].val()][WMEM[targAddrReg].val()] = WMEM[sourceReg];
+        if(PMEM[val(WMEM[targPMemReg])] != null) {
+            store(PMEM, val(WMEM[targPMemReg]), val(WMEM[targAddrReg]), WMEM[sourceReg]);
         }
     }
     @GeneCommand(weight=20, cost=0.02, args=3)
     public void _USTO (int targUMemReg, int targAddrReg, int sourceReg) {
-        if(UMEM[WMEM[targUMemReg].val()] != null) {
-            UMEM[WMEM[targUMemReg].val()][WMEM[targAddrReg].val()] = WMEM[sourceReg];
+        if(UMEM[val(WMEM[targUMemReg])] != null) {
+            store(UMEM, val(WMEM[targUMemReg]), val(WMEM[targAddrReg]), WMEM[sourceReg]);
         }
     }
 
     //Put values in the registry from existing values in memories
     @GeneCommand(weight=150, cost=0, args=3)
     public void _SGET (int targReg, int sourceSMemReg, int sourceAddrReg) {
-        if(SMEM[WMEM[sourceSMemReg].val()] != null) {
-            WMEM[targReg] = SMEM[WMEM[sourceSMemReg].val()][WMEM[sourceAddrReg].val()];
+        if(SMEM[val(WMEM[sourceSMemReg])] != null) {
+            WMEM[targReg] = SMEM[val(WMEM[sourceSMemReg])][val(WMEM[sourceAddrReg])];
         }
     }
     @GeneCommand(weight=50, cost=0, args=3)
     public void _PGET (int targReg, int sourcePMemReg, int sourceAddrReg) {
-        if(PMEM[WMEM[sourcePMemReg].val()] != null) {
-            WMEM[targReg] = PMEM[WMEM[sourcePMemReg].val()][WMEM[sourceAddrReg].val()];
+        if(PMEM[val(WMEM[sourcePMemReg])] != null) {
+            WMEM[targReg] = PMEM[val(WMEM[sourcePMemReg])][val(WMEM[sourceAddrReg])];
         }
     }
     @GeneCommand(weight=20, cost=0, args=3)
     public void _UGET (int targReg, int sourceUMemReg, int sourceAddrReg) {
-        if(UMEM[WMEM[sourceUMemReg].val()] != null) {
-            WMEM[targReg] = UMEM[WMEM[sourceUMemReg].val()][WMEM[sourceAddrReg].val()];
+        if(UMEM[val(WMEM[sourceUMemReg])] != null) {
+            WMEM[targReg] = UMEM[val(WMEM[sourceUMemReg])][val(WMEM[sourceAddrReg])];
         }
     }
 
     //Put immediate values in immediate locations
     @GeneCommand(weight=200, cost=0, args=2)
     public void _IMOV (int targReg, @Immed int immed) {
-        WMEM[targReg] = ub(immed);
+        WMEM[targReg] = clamp(immed);
     }
     @GeneCommand(weight=100, cost=0, args=3)
     public void _ISSTO(int targSMem, @Immed int targAddr, @Immed int immed) {
         if(SMEM[targSMem] != null) {
-            SMEM[targSMem][targAddr] = ub(immed);
+            store(SMEM, targSMem, targAddr, clamp(immed));
         }
     }
     @GeneCommand(weight=50, cost=0.01, args=3)
     public void _IPSTO(int targSMem, @Immed int targAddr, @Immed int immed) {
         if(PMEM[targSMem] != null) {
-            PMEM[targSMem][targAddr] = ub(immed);
+            store(PMEM, targSMem, targAddr, clamp(immed));
         }
     }
     @GeneCommand(weight=20, cost=0.02, args=3)
     public void _IUSTO(int targSMem, @Immed int targAddr, @Immed int immed) {
         if(UMEM[targSMem] != null) {
-            UMEM[targSMem][targAddr] = ub(immed);
+            store(UMEM, targSMem, targAddr, clamp(immed));
         }
     }
 
@@ -207,89 +228,145 @@ public class DefaultGeneticRobot extends GeneticRobot {
     @GeneCommand(weight=20, cost=0, args=2)
     public void _WCLR (int start, int end) {
         while(start < end && start < 256) {
-            WMEM[start] = ub(0);
+            WMEM[start] = 0;
             start++;
         }
     }
     @GeneCommand(weight=10, cost=0, args=3)
     public void _SCLR (int targSMemreg, int startReg, int endReg) {
-        if(SMEM[WMEM[targSMemreg].val()] != null) {
-            int counter = WMEM[startReg].val();
-            while(counter < WMEM[endReg].val() && counter < 256) {
-                SMEM[WMEM[targSMemreg].val()][counter] = ub(0);
+        if(SMEM[val(WMEM[targSMemreg])] != null) {
+            int counter = val(WMEM[startReg]);
+            while(counter < val(WMEM[endReg]) && counter < 256) {
+                store(SMEM, val(WMEM[targSMemreg]), counter, (byte) 0);
                 counter++;
             }
         }
     }
     @GeneCommand(weight=6, cost=0, args=3)
     public void _PCLR (int targSMemreg, int startReg, int endReg) {
-        if(PMEM[WMEM[targSMemreg].val()] != null) {
-            int counter = WMEM[startReg].val();
-            while(counter < WMEM[endReg].val() && counter < 256) {
-                PMEM[WMEM[targSMemreg].val()][counter] = ub(0);
+        if(PMEM[val(WMEM[targSMemreg])] != null) {
+            int counter = val(WMEM[startReg]);
+            while(counter < val(WMEM[endReg]) && counter < 256) {
+                store(PMEM, val(WMEM[targSMemreg]), counter, (byte) 0);
                 counter++;
             }
         }
     }
     @GeneCommand(weight=2, cost=0, args=3)
     public void _UCLR (int targSMemreg, int startReg, int endReg) {
-        if(UMEM[WMEM[targSMemreg].val()] != null) {
-            int counter = WMEM[startReg].val();
-            while(counter < WMEM[endReg].val() && counter < 256) {
-                UMEM[WMEM[targSMemreg].val()][counter] = ub(0);
+        if(UMEM[val(WMEM[targSMemreg])] != null) {
+            int counter = val(WMEM[startReg]);
+            while(counter < val(WMEM[endReg]) && counter < 256) {
+                store(UMEM, val(WMEM[targSMemreg]), counter, (byte) 0);
                 counter++;
             }
         }
     }
 
     //Get information about where the Robot is and how fast it's going.
+    @GeneCommand(weight=10, cost=0, args=1, idempotent=true)
+    public void _POSX (int targReg) {WMEM[targReg] = clamp((int) (getX()/ARENA_SIZE*255));}
+    @GeneCommand(weight=10, cost=0, args=1, idempotent=true)
+    public void _VELX (int targReg) {WMEM[targReg] = clamp((int) getVelX());}
+    @GeneCommand(weight=10, cost=0, args=1, idempotent=true)
+    public void _ACCX (int targReg) {WMEM[targReg] = clamp((int) getAccX());}
+    @GeneCommand(weight=10, cost=0, args=1, idempotent=true)
+    public void _POSY (int targReg) {WMEM[targReg] = clamp((int) (getY()/ARENA_SIZE*255));}
+    @GeneCommand(weight=10, cost=0, args=1, idempotent=true)
+    public void _VELY (int targReg) {WMEM[targReg] = clamp((int) getVelY());}
+    @GeneCommand(weight=10, cost=0, args=1, idempotent=true)
+    public void _ACCY (int targReg) {WMEM[targReg] = clamp((int) getAccY());}
+    @GeneCommand(weight=10, cost=0, args=1, idempotent=true)
+    public void _POSR (int targReg) {WMEM[targReg] = clamp((int) (getR()/(2*Math.PI)*255));}
+    @GeneCommand(weight=10, cost=0, args=1, idempotent=true)
+    public void _VELR (int targReg) {WMEM[targReg] = clamp((int) getVelR());}
+    @GeneCommand(weight=10, cost=0, args=1, idempotent=true)
+    public void _ACCR (int targReg) {WMEM[targReg] = clamp((int) getAccR());}
+
+    //Sensing. The view distance is in five-pixel steps, and what's seen is where everything was at the start of the tick.
+    //The _NEAR family counts what's in view; the _NST family puts the nearest one's UUID in targReg and the one after.
+    @GeneCommand(weight=30, cost=0.1, args=1)
+    public void _VIEW (int viewReg) {viewDistance = val(WMEM[viewReg]);}
+    @GeneCommand(weight=30, cost=0, args=1)
+    public void _NEAR (int targReg) {countNear(targReg, Entity.class);}
     @GeneCommand(weight=10, cost=0, args=1)
-    public void _POSX (int targReg) {WMEM[targReg] = ub((int) (getX()/ARENA_SIZE*255));}
-    @GeneCommand(weight=10, cost=0, args=1)
-    public void _VELX (int targReg) {WMEM[targReg] = ub((int) getVelX());}
-    @GeneCommand(weight=10, cost=0, args=1)
-    public void _ACCX (int targReg) {WMEM[targReg] = ub((int) getAccX());}
-    @GeneCommand(weight=10, cost=0, args=1)
-    public void _POSY (int targReg) {WMEM[targReg] = ub((int) (getY()/ARENA_SIZE*255));}
-    @GeneCommand(weight=10, cost=0, args=1)
-    public void _VELY (int targReg) {WMEM[targReg] = ub((int) getVelY());}
-    @GeneCommand(weight=10, cost=0, args=1)
-    public void _ACCY (int targReg) {WMEM[targReg] = ub((int) getAccY());}
+    public void _CNEAR (int targReg) {countNear(targReg, Cog.class);}
     @GeneCommand(weight=10, cost=0, args=1)
-    public void _POSR (int targReg) {WMEM[targReg] = ub((int) (getR()/(2*Math.PI)*255));}
+    public void _RNEAR (int targReg) {countNear(targReg, Robot.class);}
     @GeneCommand(weight=10, cost=0, args=1)
-    public void _VELR (int targReg) {WMEM[targReg] = ub((int) getVelR());}
+    public void _BNEAR (int targReg) {countNear(targReg, Bullet.class);}
     @GeneCommand(weight=10, cost=0, args=1)
-    public void _ACCR (int targReg) {WMEM[targReg] = ub((int) getAccR());}
+    public void _WNEAR (int targReg) {countNear(targReg, Wall.class);}
+    @GeneCommand(weight=60, cost=0, args=1)
+    public void _NST (int targReg) {findNearest(targReg, Entity.class);}
+    @GeneCommand(weight=60, cost=0, args=1)
+    public void _CNST (int targReg) {findNearest(targReg, Cog.class);}
+    @GeneCommand(weight=60, cost=0, args=1)
+    public void _RNST (int targReg) {findNearest(targReg, Robot.class);}
+    @GeneCommand(weight=20, cost=0, args=1)
+    public void _BNST (int targReg) {findNearest(targReg, Bullet.class);}
+    @GeneCommand(weight=30, cost=0, args=1)
+    public void _WNST (int targReg) {findNearest(targReg, Wall.class);}
 
-    //TODO Find other nearby entities
+    //Looking where the Robot is facing: the first thing dead ahead, or what's in a cone either side of straight ahead.
+    //The cone's half-angle is in 256ths of a half turn.
     @GeneCommand(weight=30, cost=0.1, args=1)
-    public void _VIEW (int viewReg) {viewDistance = WMEM[viewReg].val();}
-    @GeneCommand(weight=30, cost=0, args=1)
-    public void _NEAR (int targReg) {}
-    public void _CNEAR (int targReg) {}
-    public void _RNEAR (int targReg) {}
-    public void _BNEAR (int targReg) {}
-    public void _WNEAR (int targReg) {}
-    public void _NST (int targReg) {}
-    public void _CNST (int targReg) {}
-    public void _RNST (int targReg) {}
-    public void _BNST (int targReg) {}
-    public void _WNST (int targReg) {}
+    public void _LOOK (int targReg) {writeUUID(targReg, getArena().rayCast(getX(), getY(), Math.cos(getR()), -Math.sin(getR()), viewDistance * VIEW_SCALE, Entity.class, this));}
+    @GeneCommand(weight=20, cost=0.1, args=2)
+    public void _CONE (int targReg, int angleReg) {
+        lookAround(val(WMEM[angleReg]));
+        WMEM[targReg] = clamp(Math.min(seen.size(), 255));
+    }
+    @GeneCommand(weight=30, cost=0.1, args=2)
+    public void _NCONE(int targReg, int angleReg) {
+        lookAround(val(WMEM[angleReg]));
+        Entity nearest = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for(Entity e: seen) {
+            double distance = (e.getX() - getX())*(e.getX() - getX()) + (e.getY() - getY())*(e.getY() - getY());
+            if(distance < nearestDistance) {
+                nearest = e;
+                nearestDistance = distance;
+            }
+        }
+        writeUUID(targReg, nearest);
+    }
+
+    private void lookAround(int angle) {
+        seen.clear();
+        getArena().inCone(getX(), getY(), Math.cos(getR()), -Math.sin(getR()), angle / 256.0 * Math.PI, viewDistance * VIEW_SCALE, Entity.class, this, seen);
+    }
+
+    private void countNear(int targReg, Class<? extends Entity> type) {
+        seen.clear();
+        getArena().within(getX(), getY(), viewDistance * VIEW_SCALE, type, this, seen);
+        WMEM[targReg] = clamp(Math.min(seen.size(), 255));
+    }
+    private void findNearest(int targReg, Class<? extends Entity> type) {
+        getArena().nearest(getX(), getY(), viewDistance * VIEW_SCALE, 1, type, this, seen);
+        writeUUID(targReg, seen.isEmpty()? null: seen.get(0));
+    }
+    //Two registers' worth of UUID, the way _OTYPE and the rest read them. Nobody is handle 0, which is never anybody.
+    private void writeUUID(int targReg, Entity e) {
+        if(targReg >= 255) return;
+        int handle = (e == null)? 0: getArena().getEntities().handleOf(e.getUUID());
+        WMEM[targReg] = clamp((handle >> 8) & 0xFF);
+        WMEM[targReg+1] = clamp(handle & 0xFF);
+    }
 
     //General actions
     @GeneCommand(weight=100, cost=0, args=0)
     public void _HEAL () {repair();}
     @GeneCommand(weight=250, cost=0, args=1)
-    public void _FORWD(int forceReg) {forward(WMEM[forceReg].val());}
+    public void _FORWD(int forceReg) {forward(val(WMEM[forceReg]));}
     @GeneCommand(weight=100, cost=0, args=1)
-    public void _REVRS(int forceReg) {forward(-WMEM[forceReg].val());}
+    public void _REVRS(int forceReg) {forward(-val(WMEM[forceReg]));}
     @GeneCommand(weight=110, cost=0, args=0)
     public void _FIRE () {fire();}
     @GeneCommand(weight=400, cost=0, args=1)
-    public void _TURNL(int forceReg) {rotate(WMEM[forceReg].val());}
+    public void _TURNL(int forceReg) {rotate(val(WMEM[forceReg]));}
     @GeneCommand(weight=400, cost=0, args=1)
-    public void _TURNR(int forceReg) {rotate(-WMEM[forceReg].val());}
+    public void _TURNR(int forceReg) {rotate(-val(WMEM[forceReg]));}
 
     @GeneCommand(weight=40, cost=1, args=2)
     public void _WALL (int lengthReg, int widthReg) {} //TODO Implement _WALL() [when Walls exist]
@@ -297,90 +374,91 @@ public class DefaultGeneticRobot extends GeneticRobot {
     public void _SPIT (int valueReg) {} //TODO Implement _SPIT() [when Cogs exist]
 
 
-    public void _HUE (int sourceReg) {setHue(WMEM[sourceReg].val());}
+    public void _HUE (int sourceReg) {setHue(val(WMEM[sourceReg]));}
     public void _FACE(int uuidReg) {} //TODO Face towards an entity
 
     //Math
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _ADD  (int arg0, int arg1) {WMEM[arg0] = ub(WMEM[arg0].val() + WMEM[arg1].val());}
+    public void _ADD  (int arg0, int arg1) {WMEM[arg0] = clamp(val(WMEM[arg0]) + val(WMEM[arg1]));}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _SUB  (int arg0, int arg1) {WMEM[arg0] = ub(WMEM[arg0].val() + WMEM[arg1].val());}
+    public void _SUB  (int arg0, int arg1) {WMEM[arg0] = clamp(val(WMEM[arg0]) + val(WMEM[arg1]));}
     @GeneCommand(weight=10, cost=0, args=2)
-    public void _PROD (int arg0, int arg1) {WMEM[arg0] = ub(WMEM[arg0].val() + WMEM[arg1].val());}
+    public void _PROD (int arg0, int arg1) {WMEM[arg0] = clamp(val(WMEM[arg0]) + val(WMEM[arg1]));}
     @GeneCommand(weight=10, cost=0, args=2)
-    public void _QUOT (int arg0, int arg1) {if(WMEM[arg1].val() != 0) WMEM[arg0] = ub(WMEM[arg0].val() + WMEM[arg1].val());}
+    public void _QUOT (int arg0, int arg1) {if(val(WMEM[arg1]) != 0) WMEM[arg0] = clamp(val(WMEM[arg0]) + val(WMEM[arg1]));}
     @GeneCommand(weight=50, cost=0, args=1)
-    public void _INCR (int arg0) {WMEM[arg0] = ub(WMEM[arg0].val() + 1);}
+    public void _INCR (int arg0) {WMEM[arg0] = clamp(val(WMEM[arg0]) + 1);}
 
     //Identity of other Robots
+    //(Other robots are thinking at the same time as this one, so they're seen as they were at the start of the tick.)
     @GeneCommand(weight=30, cost=0, args=2)
-    public void _OTYPE(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub(typeOf(getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val())));}
+    public void _OTYPE(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp(typeOf(getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1]))));}
     @GeneCommand(weight=30, cost=0, args=2)
-    public void _OHP  (int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) (getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val()).getHealth()));}
+    public void _OHP  (int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) (getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1])).getSeenHealth()));}
     @GeneCommand(weight=30, cost=0, args=2)
-    public void _OCOG (int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val()) instanceof Robot) WMEM[targReg] = ub((int)((Robot) getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val())).getCogs());}
+    public void _OCOG (int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1])) instanceof Robot) WMEM[targReg] = clamp((int)((Robot) getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1]))).getSeenCogs());}
     @GeneCommand(weight=30, cost=0, args=2)
-    public void _OHUE (int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val()) instanceof Robot) WMEM[targReg] = ub((int)((Robot) getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val())).getHue());}
+    public void _OHUE (int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1])) instanceof Robot) WMEM[targReg] = clamp((int)((Robot) getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1]))).getSeenHue());}
     @GeneCommand(weight=15, cost=0, args=2)
-    public void _OFIT (int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val()) instanceof Robot) WMEM[targReg] = ub((int)((GeneticRobot) getArena().fromUUID(WMEM[uuidReg].val(),WMEM[uuidReg+1].val())).getFitness());}
+    public void _OFIT (int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1])) instanceof Robot) WMEM[targReg] = clamp((int)((GeneticRobot) getArena().fromUUID(val(WMEM[uuidReg]),val(WMEM[uuidReg+1]))).getSeenFitness());}
 
     @GeneCommand(weight=5, cost=0, args=1)
-    public void _UUID(int targReg) {if(targReg < 255) { WMEM[targReg] = ub(getUUID()>>8); WMEM[targReg] = ub(getUUID());}}
+    public void _UUID(int targReg) {writeUUID(targReg, this);}
     @GeneCommand(weight=20, cost=0, args=1)
-    public void _HP   (int targReg) {WMEM[targReg] = ub((int) getHealth());}
+    public void _HP   (int targReg) {WMEM[targReg] = clamp((int) getHealth());}
     @GeneCommand(weight=20, cost=0, args=1)
-    public void _COG  (int targReg) {WMEM[targReg] = ub((int) getCogs());}
+    public void _COG  (int targReg) {WMEM[targReg] = clamp((int) getCogs());}
     @GeneCommand(weight=10, cost=0, args=1)
-    public void _PNT  (int targReg) {WMEM[targReg] = ub((int) getFitness());}
+    public void _PNT  (int targReg) {WMEM[targReg] = clamp((int) getFitness());}
 
     @GeneCommand(weight=70, cost=.5, args=2)
-    public void _UPG  (int statReg, int amountReg) {upgrade(WMEM[statReg], WMEM[amountReg].val());}
+    public void _UPG  (int statReg, int amountReg) {upgrade(val(WMEM[statReg]), val(WMEM[amountReg]));}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _STAT (int targReg, int statReg) {WMEM[targReg] = stats[Math.abs(statReg>>5)];}
+    public void _STAT (int targReg, int statReg) {WMEM[targReg] = (byte) stats[Math.abs(statReg>>5)].val();}
     @GeneCommand(weight=5, cost=0, args=2)
-    public void _KWGT (int targReg, int kAddrReg) {if(KMEM[WMEM[kAddrReg].val()] != null) WMEM[targReg] = ub(KMEM[WMEM[kAddrReg].val()].getWeight());}
+    public void _KWGT (int targReg, int kAddrReg) {if(KMEM[val(WMEM[kAddrReg])] != null) WMEM[targReg] = clamp(getArena().getGeneWeights()[val(WMEM[kAddrReg])]);}
     @GeneCommand(weight=40, cost=0, args=2)
-    public void _COST (int targReg, int kAddrReg) {if(KMEM[WMEM[kAddrReg].val()] != null) WMEM[targReg] = ub((int)(KMEM[WMEM[kAddrReg].val()].getCost()*4));}
+    public void _COST (int targReg, int kAddrReg) {if(KMEM[val(WMEM[kAddrReg])] != null) WMEM[targReg] = clamp((int)(KMEM[val(WMEM[kAddrReg])].getCost()*4));}
 
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _OPOSX(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg].val()+1).getX());}
+    public void _OPOSX(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg])+1).getX());}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _OVELX(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg].val()+1).getVelX());}
+    public void _OVELX(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg])+1).getVelX());}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _OACCX(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg].val()+1).getAccX());}
+    public void _OACCX(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg])+1).getSeenAccX());}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _OPOSY(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg].val()+1).getY());}
+    public void _OPOSY(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg])+1).getY());}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _OVELY(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg].val()+1).getVelY());}
+    public void _OVELY(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg])+1).getVelY());}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _OACCY(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg].val()+1).getAccY());}
+    public void _OACCY(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg])+1).getSeenAccY());}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _OPOSR(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg].val()+1).getR());}
+    public void _OPOSR(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg])+1).getR());}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _OVELR(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg].val()+1).getVelR());}
+    public void _OVELR(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg])+1).getVelR());}
     @GeneCommand(weight=20, cost=0, args=2)
-    public void _OACCR(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg+1].val()) != null) WMEM[targReg] = ub((int) getArena().fromUUID(WMEM[uuidReg].val(),  WMEM[uuidReg].val()+1).getAccR());}
+    public void _OACCR(int targReg, int uuidReg) {if(uuidReg < 255 && getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg+1])) != null) WMEM[targReg] = clamp((int) getArena().fromUUID(val(WMEM[uuidReg]),  val(WMEM[uuidReg])+1).getSeenAccR());}
 
     //TODO Better manage multiple memories
     @GeneCommand(weight=6, cost=8, args=1)
-    public void _DEFS (int newMemReg) {if(SMEM[WMEM[newMemReg].val()] == null) createMemory(SMEM, WMEM[newMemReg].val());}
+    public void _DEFS (int newMemReg) {if(SMEM[val(WMEM[newMemReg])] == null) createMemory(SMEM, val(WMEM[newMemReg]));}
     @GeneCommand(weight=7, cost=4, args=1)
-    public void _DELS (int memReg) {if(SMEM[WMEM[memReg].val()] != null && WMEM[memReg].val() != 0) SMEM[WMEM[memReg].val()] = null;}
+    public void _DELS (int memReg) {if(SMEM[val(WMEM[memReg])] != null && val(WMEM[memReg]) != 0) dropMemory(SMEM, val(WMEM[memReg]));}
     @GeneCommand(weight=4, cost=16, args=1)
-    public void _DEFP (int newMemReg) {if(PMEM[WMEM[newMemReg].val()] == null) createMemory(PMEM, WMEM[newMemReg].val());}
+    public void _DEFP (int newMemReg) {if(PMEM[val(WMEM[newMemReg])] == null) createMemory(PMEM, val(WMEM[newMemReg]));}
     @GeneCommand(weight=2, cost=8, args=1)
-    public void _DELP (int memReg) {if(SMEM[WMEM[memReg].val()] != null && WMEM[memReg].val() != 0 && !(WMEM[memReg].val() == loaded && CURRENT == PMEM)) PMEM[WMEM[memReg].val()] = null;}
+    public void _DELP (int memReg) {if(SMEM[val(WMEM[memReg])] != null && val(WMEM[memReg]) != 0 && !(val(WMEM[memReg]) == loaded && CURRENT == PMEM)) dropMemory(PMEM, val(WMEM[memReg]));}
     @GeneCommand(weight=1, cost=32, args=1)
-    public void _DEFU (int newMemReg) {if(UMEM[WMEM[newMemReg].val()] == null) createMemory(UMEM, WMEM[newMemReg].val());}
+    public void _DEFU (int newMemReg) {if(UMEM[val(WMEM[newMemReg])] == null) createMemory(UMEM, val(WMEM[newMemReg]));}
     @GeneCommand(weight=1, cost=64, args=1)
-    public void _DELU (int memReg) {if(SMEM[WMEM[memReg].val()] != null && WMEM[memReg].val() != 0 && !(WMEM[memReg].val() == loaded && CURRENT == UMEM)) UMEM[WMEM[memReg].val()] = null;}
+    public void _DELU (int memReg) {if(SMEM[val(WMEM[memReg])] != null && val(WMEM[memReg]) != 0 && !(val(WMEM[memReg]) == loaded && CURRENT == UMEM)) dropMemory(UMEM, val(WMEM[memReg]));}
 
 
-    public void _LOADED(int targReg) {WMEM[targReg] = ub(loaded);}
+    public void _LOADED(int targReg) {WMEM[targReg] = clamp(loaded);}
 
     //TODO Get rid of this awful, awful command
     @Deprecated
-    @GeneCommand(weight=10, cost=0.2, args=1)
+    @GeneCommand(weight=10, cost=0.2, args=3)
     public void _SWAP(int arg0, int arg1, int arg2) {
         if(CURRENT[arg0] != null) {
             loaded = arg0;
@@ -389,44 +467,44 @@ public class DefaultGeneticRobot extends GeneticRobot {
     }
 
     //TODO Mass gene exchange and crossing commands
-    @GeneCommand(weight=15, cost=0, args=1)
+    @GeneCommand(weight=15, cost=0, args=0)
     public void _TARG() {}
-    @GeneCommand(weight=10, cost=0, args=1)
+    @GeneCommand(weight=10, cost=0, args=0)
     public void _SCOPY() {}
-    @GeneCommand(weight=30, cost=0, args=1)
+    @GeneCommand(weight=30, cost=0, args=0)
     public void _PCOPY() {}
-    @GeneCommand(weight=1, cost=0, args=1)
+    @GeneCommand(weight=1, cost=0, args=0)
     public void _UCOPY() {}
 
     @GeneCommand(weight=42, cost=42, args=0)
     public void _REP  () {reproduce();}
     @GeneCommand(weight=42, cost=16, args=2)
     public void _TWK  (int geneToTweak, int sourceReg) {
-        if(KMEM[geneToTweak] != null) KMEM[geneToTweak].setWeight(WMEM[sourceReg].val());
+        if(KMEM[geneToTweak] != null) tweaks.add(new Point(geneToTweak, val(WMEM[sourceReg])));
     }
     @GeneCommand(weight=255, cost=0, args=1)
     public void _KRAND(int targReg) {
-        WMEM[targReg] = randomGene();
+        WMEM[targReg] = randomGene(getRandom(), getArena().getGeneWeights());
     }
     @GeneCommand(weight=70, cost=0, args=2)
     public void _URAND(int targReg, int sourceUMem) {
-        if(UMEM[sourceUMem] != null) WMEM[targReg] = randomAddress(UMEM[sourceUMem]);
+        if(UMEM[sourceUMem] != null) WMEM[targReg] = randomAddress(UMEM[sourceUMem], getRandom());
     }
     @GeneCommand(weight=70, cost=0, args=2)
     public void _PRAND(int targReg, int sourceUMem) {
-        if(PMEM[sourceUMem] != null) WMEM[targReg] = randomAddress(PMEM[sourceUMem]);
+        if(PMEM[sourceUMem] != null) WMEM[targReg] = randomAddress(PMEM[sourceUMem], getRandom());
     }
     @GeneCommand(weight=255, cost=0, args=2)
     public void _SRAND(int targReg, int sourceUMem) {
-        if(SMEM[sourceUMem] != null) WMEM[targReg] = randomAddress(SMEM[sourceUMem]);
+        if(SMEM[sourceUMem] != null) WMEM[targReg] = randomAddress(SMEM[sourceUMem], getRandom());
     }
     @GeneCommand(weight=255, cost=0, args=1)
     public void _WRAND(int targReg) {
-        WMEM[targReg] = randomAddress(WMEM);
+        WMEM[targReg] = randomAddress(WMEM, getRandom());
     }
     @GeneCommand(weight=255, cost=0, args=1)
     public void _IRAND(int targReg) {
-        WMEM[targReg] = ub((int) (Option.random.nextFloat() * 255));
+        WMEM[targReg] = clamp((int) (getRandom().nextDouble() * 255));
     }
 
 }
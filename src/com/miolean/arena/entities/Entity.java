@@ -6,6 +6,9 @@ import com.miolean.arena.ui.LivePanel;
 import javax.swing.*;
 import java.awt.*;
 import java.io.Serializable;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.miolean.arena.entities.Arena.ARENA_SIZE;
 import static com.miolean.arena.entities.Arena.BORDER;
@@ -19,7 +22,7 @@ import static com.miolean.arena.entities.Arena.BORDER;
 
 public abstract class Entity implements Serializable {
 
-    //Motion components:
+    //Motion components (only used out of the arena; in it, they live in the Arena's MotionStore):
     private double x; //X position, in pixels
     private double y; //Y position, in pixels
     private double r; //Rotation, in radians
@@ -59,6 +62,34 @@ public abstract class Entity implements Serializable {
     //ID management
     private int uuid = -1;
 
+    //This Entity's own random stream (see Arena.randomFor), remade every tick.
+    private SplittableRandom random;
+    private int randomTime = -1;
+
+    //What other Entities get to see of this one while robots are thinking in parallel (see Arena.think()).
+    //Robots change their own health and acceleration as they think; reading the live values from
+    //another thread would make the result depend on which thread got there first.
+    private double seenHealth;
+    private double seenAccX;
+    private double seenAccY;
+    private double seenAccR;
+
+    //Where this Entity's motion lives while it's in an arena.
+    MotionStore motion;
+    int slot = -1;
+
+    //Bookkeeping for the Arena: whether this is on its way out, and where it is in the robots or cogs list.
+    boolean leaving = false;
+    int listIndex = -1;
+
+    //Where the Entity's outline was last worked out to be (see bounds()).
+    private transient Bounds bounds;
+    //Where the Entity was at the end of the last tick, and its outline there, for the UI (see capture()).
+    private transient volatile View view;
+
+    //Bookkeeping for SweepAndPrune, which needs to tell newcomers apart from Entities it already sorted.
+    int broadphaseStamp = -1;
+
 
     Entity(int width, int height, int health, Arena arena) {
         this.width = width;
@@ -68,20 +99,34 @@ public abstract class Entity implements Serializable {
     }
 
 
-    void applyPhysics() {
-        r %= 6.28;
+    //Make a used Entity as good as new, so a pool can hand it out again (see EntityPool). It has to be out of the arena.
+    //The broadphase stamp stays: it's how SweepAndPrune recognizes this object, whoever it's pretending to be now.
+    void recycle(int health) {
+        x = y = r = 0;
+        velX = velY = velR = 0;
+        accX = accY = accR = 0;
+        this.health = health;
+        alive = true;
+        age = 0;
+        uuid = -1;
+        random = null;
+        randomTime = -1;
+        seenHealth = seenAccX = seenAccY = seenAccR = 0;
+        leaving = false;
+        listIndex = -1;
+    }
 
-        velX -= DRAG * velX;
-        velY -= DRAG * velY;
-        velR -= RDRAG * velR;
 
-        velX += accX;
-        velY += accY;
-        velR += accR;
+    //Move this one Entity by a tick. In the arena everything is moved at once by MotionStore.integrate(), before anyone's update().
+    void applyPhysics() {
+        double velX = getVelX() - DRAG * getVelX() + getAccX();
+        double velY = getVelY() - DRAG * getVelY() + getAccY();
+        double velR = getVelR() - RDRAG * getVelR() + getAccR();
+        double x = getX() + velX;
+        double y = getY() + velY;
 
-        x += velX;
-        y += velY;
-        r += velR;
+        setR(getR() % 6.28 + velR);
+        setVelR(velR);
 
         if(x > ARENA_SIZE - BORDER) {
             x = ARENA_SIZE - BORDER;
@@ -99,6 +144,11 @@ public abstract class Entity implements Serializable {
             y = BORDER;
             velY = -velY;
         }
+
+        setX(x);
+        setY(y);
+        setVelX(velX);
+        setVelY(velY);
     }
 
     void repel(Entity e) {
@@ -110,13 +160,15 @@ public abstract class Entity implements Serializable {
 //        e.move((e.mass/(e.mass + mass) * (ourCompoundVel + theirCompoundVel)), angleOfIncidence + Math.PI);
 
 //
-        double compoundVel = Math.sqrt(velX*velX + velY*velY);
+        double x = getX();
+        double y = getY();
+        double compoundVel = Math.sqrt(getVelX()*getVelX() + getVelY()*getVelY());
         double rposX = x - e.getX();
         double rposY = y  - e.getY();
 
         //Lay down the law for impossibly direct collisions
-        double velX = (Math.abs(this.velX) < 1)? this.velX+1:this.velX;
-        double velY = (Math.abs(this.velY) < 1)? this.velY+1:this.velY;
+        double velX = (Math.abs(getVelX()) < 1)? getVelX()+1:getVelX();
+        double velY = (Math.abs(getVelY()) < 1)? getVelY()+1:getVelY();
         if(rposX == 0) rposX = 1;
         if(rposY == 0) rposY = 1;
 
@@ -125,7 +177,7 @@ public abstract class Entity implements Serializable {
         double ydis = e.getY() - getY();
         double angleOfIncidence = Math.atan(xdis/ydis) + Math.PI/2;
         double ourCompoundVel = (x)*(Math.cos(angleOfIncidence)) + (y)*(Math.sin(angleOfIncidence));
-        double theirCompoundVel = (e.x)*(Math.cos(Math.PI + angleOfIncidence)) + (e.y)*(Math.sin(Math.PI + angleOfIncidence));
+        double theirCompoundVel = (e.getX())*(Math.cos(Math.PI + angleOfIncidence)) + (e.getY())*(Math.sin(Math.PI + angleOfIncidence));
         double momentumOfImpact = (ourCompoundVel * mass) + (theirCompoundVel * e.mass);
 
         System.out.println("Found impact to be " + momentumOfImpact);
@@ -148,8 +200,8 @@ public abstract class Entity implements Serializable {
         //The idea is to decide ASAP that e doesn't intersect.
 
         //First check: Are these things moving?
-        if(Math.abs(e.getVelX()) < 0.05 && Math.abs(velX) < 0.05
-                && Math.abs(e.getVelY()) < 0.05 && Math.abs(velY) < 0.05
+        if(Math.abs(e.getVelX()) < 0.05 && Math.abs(getVelX()) < 0.05
+                && Math.abs(e.getVelY()) < 0.05 && Math.abs(getVelY()) < 0.05
                 && ! (this instanceof Wall)) {
             //Neither of these appear to really be moving, so it's unlikely that they intersect.
             return false;
@@ -157,7 +209,7 @@ public abstract class Entity implements Serializable {
 
         //Second check: Are these things close enough to come into contact?
         int maxBounds = Math.max(Math.max(width, height), Math.max(e.width, e.height));
-        if(Math.abs(x - e.getX()) > maxBounds || Math.abs(y - e.getY()) > maxBounds) return false;
+        if(Math.abs(getX() - e.getX()) > maxBounds || Math.abs(getY() - e.getY()) > maxBounds) return false;
 
 
 
@@ -167,34 +219,68 @@ public abstract class Entity implements Serializable {
 
     }
 
+    //Broadphase extents: a box around the Entity that contains its bounds at any rotation.
+    double getBoundingRadius() { return Math.max(width, height) * 0.75; }
+    double getMinX() { return getX() - getBoundingRadius(); }
+    double getMinY() { return getY() - getBoundingRadius(); }
+    double getMaxX() { return getX() + getBoundingRadius(); }
+    double getMaxY() { return getY() + getBoundingRadius(); }
+
     void accelerate(double direction, double magnitude) {
-        accX += magnitude * Math.cos(direction) / mass;
-        accY += magnitude * Math.sin(direction) / mass;
+        setAccX(getAccX() + magnitude * Math.cos(direction) / mass);
+        setAccY(getAccY() + magnitude * Math.sin(direction) / mass);
     }
 
     void move(double direction, double magnitude) {
-        velX += magnitude * Math.cos(direction) / mass;
-        velY += magnitude * Math.sin(direction) / mass;
+        setVelX(getVelX() + magnitude * Math.cos(direction) / mass);
+        setVelY(getVelY() + magnitude * Math.sin(direction) / mass);
+    }
+
+    //Take the snapshot that other Entities see during the think phase.
+    void publish() {
+        seenHealth = health;
+        seenAccX = getAccX();
+        seenAccY = getAccY();
+        seenAccR = getAccR();
+        bounds(); //Rays cast while thinking read it, from several threads
+    }
+
+    //Everything about this Entity that should come out the same in two runs from the same seed.
+    long stateHash() {
+        long hash = getClass().getName().hashCode();
+        hash = Arena.mix(hash ^ uuid);
+        hash = Arena.mix(hash ^ Double.doubleToLongBits(getX()));
+        hash = Arena.mix(hash ^ Double.doubleToLongBits(getY()));
+        hash = Arena.mix(hash ^ Double.doubleToLongBits(getR()));
+        hash = Arena.mix(hash ^ Double.doubleToLongBits(getVelX()));
+        hash = Arena.mix(hash ^ Double.doubleToLongBits(getVelY()));
+        hash = Arena.mix(hash ^ Double.doubleToLongBits(getVelR()));
+        hash = Arena.mix(hash ^ Double.doubleToLongBits(health));
+        return Arena.mix(hash ^ age);
     }
 
     void tick() {
         if(health <= 0 || arena == null) die();
         else if(age > 0) update();
         age++;
+        refreshLive();
+    }
+
+    //Tell the MotionStore whether to move this Entity: not on the tick it's born, and not once it's out of health.
+    void refreshLive() {
+        if(motion != null) motion.live[slot] = age > 0 && health > 0;
     }
 
     protected abstract void update();
     public boolean intersectsWith(Entity e) {
-        Polygon ourBounds = getBounds();
-        Polygon theirBounds = e.getBounds();
-        for(int i = 0; i < theirBounds.npoints; i++) {
-            if(ourBounds.contains(theirBounds.xpoints[i], theirBounds.ypoints[i])) return true;
-        }
-        for(int i = 0; i < ourBounds.npoints; i++) {
-                if(theirBounds.contains(ourBounds.xpoints[i], ourBounds.ypoints[i])) return true;
-        }
-
-        return false;
+        Bounds ours = bounds();
+        Bounds theirs = e.bounds();
+        if(ours.maxX < theirs.minX || theirs.maxX < ours.minX || ours.maxY < theirs.minY || theirs.maxY < ours.minY) return false;
+
+        if(ours.radius > 0 && theirs.radius > 0) return NarrowPhase.circles(ours.x, ours.y, ours.radius, theirs.x, theirs.y, theirs.radius);
+        if(ours.radius > 0) return NarrowPhase.circlePolygon(ours.x, ours.y, ours.radius, theirs.xpoints, theirs.ypoints, theirs.npoints);
+        if(theirs.radius > 0) return NarrowPhase.circlePolygon(theirs.x, theirs.y, theirs.radius, ours.xpoints, ours.ypoints, ours.npoints);
+        return NarrowPhase.polygons(ours.xpoints, ours.ypoints, ours.npoints, theirs.xpoints, theirs.ypoints, theirs.npoints);
     }
     public abstract void intersect(Entity e);
 
@@ -204,39 +290,51 @@ public abstract class Entity implements Serializable {
     public abstract String toHTML();
 
     public boolean isAlive() {return alive;}
-    public double getX() { return x; }
-    public double getY() { return y; }
-    public double getR() { return r; }
-    public double getVelX() { return velX; }
-    public double getVelY() { return velY; }
-    public double getVelR() { return velR; }
-    public double getAccX() { return accX; }
-    public double getAccY() { return accY; }
-    public double getAccR() { return accR; }
+    //The event thread reads these too, while the arena's thread may be in the middle of moving this Entity into or out
+    //of its MotionStore. So the slot is only read once, and one that doesn't fit the store any more reads the fields instead.
+    public double getX() { MotionStore m = motion; return m == null? x: read(m.x, slot, x); }
+    public double getY() { MotionStore m = motion; return m == null? y: read(m.y, slot, y); }
+    public double getR() { MotionStore m = motion; return m == null? r: read(m.r, slot, r); }
+    public double getVelX() { MotionStore m = motion; return m == null? velX: read(m.velX, slot, velX); }
+    public double getVelY() { MotionStore m = motion; return m == null? velY: read(m.velY, slot, velY); }
+    public double getVelR() { MotionStore m = motion; return m == null? velR: read(m.velR, slot, velR); }
+    public double getAccX() { MotionStore m = motion; return m == null? accX: read(m.accX, slot, accX); }
+    public double getAccY() { MotionStore m = motion; return m == null? accY: read(m.accY, slot, accY); }
+    public double getAccR() { MotionStore m = motion; return m == null? accR: read(m.accR, slot, accR); }
+    private static double read(double[] values, int slot, double fallback) {
+        return (slot >= 0 && slot < values.length)? values[slot]: fallback;
+    }
     public double getHealth() { return health; }
     public double getMass() { return mass; }
     public long getAge() { return age; }
     public int getUUID() { return uuid; }
+    public SplittableRandom getRandom() {
+        if(random == null || randomTime != arena.getTime()) {
+            random = arena.randomFor(uuid);
+            randomTime = arena.getTime();
+        }
+        return random;
+    }
+    public double getSeenHealth() { return seenHealth; }
+    public double getSeenAccX() { return seenAccX; }
+    public double getSeenAccY() { return seenAccY; }
+    public double getSeenAccR() { return seenAccR; }
     public int getWidth() { return width; }
     public int getHeight() { return height;}
     public Arena getArena() { return arena; }
-    public void setX(double x) { this.x = x; }
-    public void setY(double y) { this.y = y; }
-    public void setR(double r) { this.r = r; }
-    public void setVelX(double velX) { this.velX = velX; }
-    public void setVelY(double velY) { this.velY = velY; }
-    public void setVelR(double velR) { this.velR = velR; }
-    public void setAccX(double accX) { this.accX = accX; }
-    public void setAccY(double accY) { this.accY = accY; }
-    public void setAccR(double accR) { this.accR = accR; }
-    public void setHealth(double health) { this.health = health;}
+    public void setX(double x) { if(motion == null) this.x = x; else motion.x[slot] = x; }
+    public void setY(double y) { if(motion == null) this.y = y; else motion.y[slot] = y; }
+    public void setR(double r) { if(motion == null) this.r = r; else motion.r[slot] = r; }
+    public void setVelX(double velX) { if(motion == null) this.velX = velX; else motion.velX[slot] = velX; }
+    public void setVelY(double velY) { if(motion == null) this.velY = velY; else motion.velY[slot] = velY; }
+    public void setVelR(double velR) { if(motion == null) this.velR = velR; else motion.velR[slot] = velR; }
+    public void setAccX(double accX) { if(motion == null) this.accX = accX; else motion.accX[slot] = accX; }
+    public void setAccY(double accY) { if(motion == null) this.accY = accY; else motion.accY[slot] = accY; }
+    public void setAccR(double accR) { if(motion == null) this.accR = accR; else motion.accR[slot] = accR; }
+    public void setHealth(double health) { this.health = health; refreshLive();}
     public void setWidth(int width) { this.width = width;}
     public void setHeight(int height) { this.height = height;}
     public void setMass(double mass) { this.mass = mass;}
-    protected void setUUID(int uuid) {
-        if(isAlive()) throw new IllegalStateException("Cannot change UUID of live entity");
-        else this.uuid = uuid;
-    }
 
     public final void die() {
         alive = false;
@@ -248,24 +346,142 @@ public abstract class Entity implements Serializable {
         this.uuid = uuid;
         onBirth();
     }
-    public void damage(double amount) {health -= amount;}
-    public void heal(double amount) {health += amount;}
+    public void damage(double amount) {health -= amount; refreshLive();}
+    public void heal(double amount) {health += amount; refreshLive();}
     public void add(Entity e) {arena.add(e);}
 
+    //The outline of the Entity around its own center, unrotated. It may only depend on the class, width and height,
+    //since it's worked out once for each combination and shared (see baseShape()). Collisions take it to be convex,
+    //unless the Entity is round (see getCollisionRadius()).
     public abstract Polygon getBaseBounds();
-    public Polygon getBounds() {
-        Polygon base = getBaseBounds();
-        double cosR = Math.cos(-r);
-        double sinR = Math.sin(-r);
-        int[] xPoints = new int[base.npoints];
-        int[] yPoints = new int[base.npoints];
-
-        for(int i = 0; i < base.npoints; i++) {
-            xPoints[i] = (int) (x + base.xpoints[i]*cosR - base.ypoints[i]*sinR);
-            yPoints[i] = (int) (y + base.xpoints[i]*sinR + base.ypoints[i]*cosR);
+
+    //Round Entities collide as a circle of this radius instead of by their outline. 0 means not round.
+    double getCollisionRadius() { return 0; }
+
+    //Take down where the Entity is now, for the UI to draw from until the next tick (see Arena.snapshot()).
+    //Only the arena's thread does this, between ticks. An Entity that hasn't moved keeps the View it has.
+    void capture() {
+        double x = getX();
+        double y = getY();
+        double r = getR();
+        View current = view;
+        if(current != null && current.x == x && current.y == y && current.r == r
+                && current.width == width && current.height == height) return;
+
+        Bounds outline = bounds();
+        view = new View(x, y, r, width, height, new Polygon(outline.xpoints, outline.ypoints, outline.npoints));
+    }
+
+    //What the UI should draw. An Entity that's never been in an arena is drawn where it is.
+    View getView() {
+        View current = view;
+        if(current != null) return current;
+
+        double x = getX();
+        double y = getY();
+        double r = getR();
+        Bounds outline = new Bounds();
+        outline.update(baseShape(), x, y, r, width, height, 0);
+        return new View(x, y, r, width, height, new Polygon(outline.xpoints, outline.ypoints, outline.npoints));
+    }
+
+    //The outline in the arena, as of the end of the last tick (see getView()). It's shared with everyone else
+    //drawing this Entity until it next moves, so don't change it.
+    public Polygon getBounds() { return getView().outline; }
+
+    //The outline collisions use. There's one per Entity, rewritten in place once its position, rotation or size
+    //changes, so only the arena's thread may call this, and not while Entities are thinking on several threads
+    //at once (publish() brings it up to date before they start).
+    Bounds bounds() {
+        Bounds current = bounds;
+        if(current == null) current = bounds = new Bounds();
+        double x = getX();
+        double y = getY();
+        double r = getR();
+        if(current.base != null && current.x == x && current.y == y && current.r == r
+                && current.width == width && current.height == height) return current;
+
+        Polygon base = (current.base != null && current.width == width && current.height == height)? current.base: baseShape();
+        current.update(base, x, y, r, width, height, getCollisionRadius());
+        return current;
+    }
+
+    private Polygon baseShape() {
+        Map<Long, Polygon> shapes = BASE_SHAPES.computeIfAbsent(getClass(), c -> new ConcurrentHashMap<>());
+        return shapes.computeIfAbsent(((long) width << 32) | (height & 0xFFFFFFFFL), size -> getBaseBounds());
+    }
+
+    //Base outlines by class, then by width and height (packed into a long).
+    private static final Map<Class<?>, Map<Long, Polygon>> BASE_SHAPES = new ConcurrentHashMap<>();
+
+    //Where an Entity was as of some tick. Once made it never changes, so the event thread can read it while the arena's thread moves on.
+    static final class View {
+        final double x, y, r;
+        final int width, height;
+        final Polygon outline;
+
+        private View(double x, double y, double r, int width, int height, Polygon outline) {
+            this.x = x;
+            this.y = y;
+            this.r = r;
+            this.width = width;
+            this.height = height;
+            this.outline = outline;
         }
+    }
 
-        return new Polygon(xPoints, yPoints, base.npoints);
+    //An Entity's outline in the arena and the box around it (or around its circle, if it's round), along with what they were worked out from.
+    //The points live in arrays of its own that update() writes over, so moving doesn't allocate anything.
+    static final class Bounds {
+        Polygon base;
+        double x, y, r;
+        int width, height;
+        double radius;
+
+        int[] xpoints = new int[0];
+        int[] ypoints = new int[0];
+        int npoints;
+        int minX, minY, maxX, maxY;
+
+        void update(Polygon base, double x, double y, double r, int width, int height, double radius) {
+            this.base = base;
+            this.x = x;
+            this.y = y;
+            this.r = r;
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+
+            if(xpoints.length < base.npoints) {
+                xpoints = new int[base.npoints];
+                ypoints = new int[base.npoints];
+            }
+            npoints = base.npoints;
+
+            double cosR = Math.cos(-r);
+            double sinR = Math.sin(-r);
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+            for(int i = 0; i < npoints; i++) {
+                xpoints[i] = (int) (x + base.xpoints[i]*cosR - base.ypoints[i]*sinR);
+                ypoints[i] = (int) (y + base.xpoints[i]*sinR + base.ypoints[i]*cosR);
+                minX = Math.min(minX, xpoints[i]);
+                minY = Math.min(minY, ypoints[i]);
+                maxX = Math.max(maxX, xpoints[i]);
+                maxY = Math.max(maxY, ypoints[i]);
+            }
+
+            if(radius > 0) {
+                minX = (int) Math.floor(x - radius);
+                minY = (int) Math.floor(y - radius);
+                maxX = (int) Math.ceil(x + radius);
+                maxY = (int) Math.ceil(y + radius);
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
     }
     public abstract void renderBody(Graphics g, int x, int y, byte flags);
     public void renderStatus(Graphics g, int x, int y, byte flags) {
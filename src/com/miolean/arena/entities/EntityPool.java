@@ -0,0 +1,54 @@
+package com.miolean.arena.entities;
+
+import com.miolean.arena.framework.Debug;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * Used Entities of one kind, kept around to be handed out again instead of allocating new ones.
+ * Bullets and Cogs come and go by the thousand, and making a fresh one every time keeps the garbage
+ * collector busy enough to show up as spikes in the tick time.
+ *
+ * An Entity only goes back in once it has left its arena for good (see Arena.despawn()), and comes
+ * out through Entity.recycle(), so it can't tell it was ever used before. Hits and misses go to the
+ * debug panel under the pool's name.
+ */
+class EntityPool<T extends Entity> {
+
+    private final String name;
+    private final int capacity;
+    private final Supplier<T> factory;
+    private final ArrayDeque<T> idle = new ArrayDeque<>();
+
+    private long hits = 0;
+    private long misses = 0;
+
+    EntityPool(String name, int capacity, Supplier<T> factory) {
+        this.name = name;
+        this.capacity = capacity;
+        this.factory = factory;
+    }
+
+    //A used Entity if there is one, otherwise a new one. Either way it still needs setting up.
+    T obtain() {
+        T e = idle.pollLast();
+        if(e == null) {
+            misses++;
+            Debug.logCount(name + " pool misses", 1);
+            return factory.get();
+        }
+        hits++;
+        Debug.logCount(name + " pool hits", 1);
+        return e;
+    }
+
+    //Hand an Entity back. Past capacity it's left for the garbage collector.
+    void release(T e) {
+        if(idle.size() < capacity) idle.addLast(e);
+    }
+
+    public int size() { return idle.size(); }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+}
@@ -0,0 +1,184 @@
+package com.miolean.arena.entities;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Every Entity in an Arena, by UUID. A UUID is a handle: the low SLOT_BITS say which slot of a plain
+ * array the Entity sits in, and the bits above are that slot's generation, which goes up every time
+ * the slot is emptied. So adding, removing and looking up are all just array accesses, and a UUID
+ * kept around after its Entity is gone (by a Bullet, say) finds nothing instead of whatever moved in
+ * after it.
+ *
+ * Freed slots are handed out again oldest first, so a slot's generation doesn't come around again in a hurry.
+ *
+ * Genes only have two bytes for a UUID, so they get a gene handle instead (see handleOf()). Those are
+ * numbered separately from slots, and work the same way on a smaller scale: the low HANDLE_BITS pick
+ * one of MAX_HANDLES handles, and the rest are the low HANDLE_GENERATION_BITS of its generation. Every
+ * Entity gets one when it arrives, as long as there are any left. The ones that arrive while all of
+ * them are taken are there all the same, they just can't be kept in a register (genes see handle 0,
+ * which is nobody). A handle kept in a register goes stale like a UUID does, except that it comes back
+ * to life if its handle is reused a multiple of 2^HANDLE_GENERATION_BITS times in the meantime.
+ */
+public class EntityTable implements Iterable<Entity> {
+
+    public static final int SLOT_BITS = 20;
+    public static final int MAX_SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = MAX_SLOTS - 1;
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1; //Keeps UUIDs positive; negative ones mean something else (see Arena.fromUUID)
+
+    public static final int HANDLE_BITS = 12;
+    public static final int HANDLE_GENERATION_BITS = 16 - HANDLE_BITS;
+    public static final int MAX_HANDLES = 1 << HANDLE_BITS;
+    private static final int HANDLE_MASK = MAX_HANDLES - 1;
+    private static final int HANDLE_GENERATION_MASK = (1 << HANDLE_GENERATION_BITS) - 1;
+
+    private Entity[] slots = new Entity[64];
+    private int[] generations = new int[64];
+    private int[] handles = new int[64]; //Each slot's gene handle, or 0 if it didn't get one
+    private int top = 1; //Slots below this have been used at some point. Slot 0 never is, so no UUID is 0.
+    private int size = 0;
+    private final FreeList free = new FreeList();
+
+    //Gene handles: which slot each one is, and the same bookkeeping as the slots themselves.
+    private int[] handleSlots = new int[64];
+    private int[] handleGenerations = new int[64];
+    private int handleTop = 1; //Handle 0 is nobody
+    private final FreeList freeHandles = new FreeList();
+
+    //Put an Entity in a slot and return its new UUID, or -1 if the table is full.
+    int add(Entity e) {
+        int slot;
+        if(free.size() > 0) slot = free.poll();
+        else {
+            if(top == MAX_SLOTS) return -1;
+            if(top == slots.length) {
+                slots = Arrays.copyOf(slots, Math.min(slots.length * 2, MAX_SLOTS));
+                generations = Arrays.copyOf(generations, slots.length);
+                handles = Arrays.copyOf(handles, slots.length);
+            }
+            slot = top++;
+            generations[slot] = 1;
+        }
+
+        slots[slot] = e;
+        handles[slot] = takeHandle(slot);
+        size++;
+        return (generations[slot] << SLOT_BITS) | slot;
+    }
+
+    //Empty the slot behind a UUID, but only if it's still the one the UUID was handed out for.
+    boolean remove(int uuid) {
+        if(get(uuid) == null) return false;
+
+        int slot = uuid & SLOT_MASK;
+        slots[slot] = null;
+        generations[slot] = (generations[slot] == GENERATION_MASK)? 1: generations[slot] + 1;
+        size--;
+        free.add(slot);
+
+        if(handles[slot] != 0) {
+            int handle = handles[slot] & HANDLE_MASK;
+            handleSlots[handle] = 0;
+            handleGenerations[handle] = (handleGenerations[handle] == HANDLE_GENERATION_MASK)? 1: handleGenerations[handle] + 1;
+            freeHandles.add(handle);
+            handles[slot] = 0;
+        }
+        return true;
+    }
+
+    //A gene handle for whoever just moved into [slot], or 0 if they're all taken.
+    private int takeHandle(int slot) {
+        int handle;
+        if(freeHandles.size() > 0) handle = freeHandles.poll();
+        else {
+            if(handleTop == MAX_HANDLES) return 0;
+            if(handleTop == handleSlots.length) {
+                handleSlots = Arrays.copyOf(handleSlots, Math.min(handleSlots.length * 2, MAX_HANDLES));
+                handleGenerations = Arrays.copyOf(handleGenerations, handleSlots.length);
+            }
+            handle = handleTop++;
+            handleGenerations[handle] = 1;
+        }
+
+        handleSlots[handle] = slot;
+        return (handleGenerations[handle] << HANDLE_BITS) | handle;
+    }
+
+    public Entity get(int uuid) {
+        if(uuid <= 0) return null;
+        int slot = uuid & SLOT_MASK;
+        if(slot >= top || generations[slot] != uuid >>> SLOT_BITS) return null;
+        return slots[slot];
+    }
+
+    //The Entity behind a gene handle from handleOf(), if it's still there.
+    public Entity fromHandle(int handle) {
+        int index = handle & HANDLE_MASK;
+        if(index <= 0 || index >= handleTop || handleGenerations[index] != (handle >>> HANDLE_BITS & HANDLE_GENERATION_MASK)) return null;
+        return slots[handleSlots[index]];
+    }
+
+    //A UUID cut down to 16 bits, for genes to keep in two registers. 0 if its Entity is gone or didn't get a handle.
+    public int handleOf(int uuid) {
+        return (get(uuid) == null)? 0: handles[uuid & SLOT_MASK];
+    }
+
+    public int size() { return size; }
+
+    //One past the highest slot ever used.
+    public int getTop() { return top; }
+
+    //Goes through the slots in order. Entities can come and go while this is happening; the ones that
+    //leave are skipped, and the ones that arrive may or may not be seen.
+    @Override
+    public Iterator<Entity> iterator() {
+        return new Iterator<Entity>() {
+            private int next = 1;
+            private Entity pending; //Read once, so a slot emptied between hasNext() and next() can't turn into null
+
+            @Override
+            public boolean hasNext() {
+                while(pending == null && next < top) pending = slots[next++];
+                return pending != null;
+            }
+
+            @Override
+            public Entity next() {
+                if(! hasNext()) throw new NoSuchElementException();
+                Entity e = pending;
+                pending = null;
+                return e;
+            }
+        };
+    }
+
+    //Freed slots or handles, oldest first, as a ring buffer.
+    private static final class FreeList {
+        private int[] items = new int[64];
+        private int head = 0;
+        private int count = 0;
+
+        int size() { return count; }
+
+        void add(int item) {
+            if(count == items.length) {
+                //Unroll the ring into a bigger array.
+                int[] bigger = new int[items.length * 2];
+                for(int i = 0; i < count; i++) bigger[i] = items[(head + i) % items.length];
+                items = bigger;
+                head = 0;
+            }
+            items[(head + count) % items.length] = item;
+            count++;
+        }
+
+        int poll() {
+            int item = items[head];
+            head = (head + 1) % items.length;
+            count--;
+            return item;
+        }
+    }
+}
@@ -1,32 +1,50 @@
 package com.miolean.arena.entities;
 
+import com.miolean.arena.framework.Debug;
 import com.miolean.arena.framework.Option;
-import com.miolean.arena.framework.UByte;
 import com.miolean.arena.genetics.Gene;
+import com.miolean.arena.genetics.GeneProfiler;
 import com.miolean.arena.ui.FieldDisplayPanel;
 import com.miolean.arena.ui.LivePanel;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.SplittableRandom;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.miolean.arena.entities.Arena.ARENA_SIZE;
+import static com.miolean.arena.framework.UByte.clamp;
 import static com.miolean.arena.framework.UByte.ub;
-import static com.miolean.arena.framework.UByte.ubDeepCopy;
+import static com.miolean.arena.framework.UByte.val;
 
 public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
 
 
 
     public static final Gene[] KMEM;
-    protected UByte[][] UMEM;
-    protected UByte[][] PMEM;
-    protected UByte[][] SMEM;
-    protected UByte[] WMEM;
-    protected UByte[][] CURRENT = PMEM;
+    //Memories are pages of 256 unsigned bytes (read them with UByte.val(), write with UByte.clamp()).
+    //A null page doesn't exist yet.
+    protected byte[][] UMEM;
+    protected byte[][] PMEM;
+    protected byte[][] SMEM;
+    protected byte[] WMEM;
+    protected byte[][] CURRENT = PMEM;
+
+    //P and U pages as runGenes() reads them (see DecodedPage). Writes to those go through store() to keep these current.
+    private final DecodedPage[] decodedPMEM = new DecodedPage[256];
+    private final DecodedPage[] decodedUMEM = new DecodedPage[256];
+    int programWrites = 0; //How many times store() has changed P or U memory, for compiled pages to notice
+
+    //Pages are shared with parents and children until one of them writes, when it gets its own copy (see store()).
+    //Everyone sharing a page shares its counter too, so it says how many of them there are.
+    private final AtomicInteger[] umemHolders = new AtomicInteger[256];
+    private final AtomicInteger[] pmemHolders = new AtomicInteger[256];
+    private final AtomicInteger[] smemHolders = new AtomicInteger[256];
 
     //Program index:
     protected int index = 0;
@@ -35,8 +53,11 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
 
 
     private double fitness = 0;
+    private double seenFitness = 0;
     private int generation = 0;
 
+    private int offspring = 0; //Reproductions asked for this tick; see applyIntents()
+
     private static int totalKWeight;
 
     static {
@@ -56,11 +77,12 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
 
         setGeneration(parent.getGeneration() + 1);
 
-        UMEM = ubDeepCopy(parent.UMEM);
-        PMEM = ubDeepCopy(parent.PMEM);
-        SMEM = ubDeepCopy(parent.SMEM);
-        WMEM = new UByte[256];
-        for(int i = 0; i < 256; i++) WMEM[i] = ub(0);
+        UMEM = share(parent.UMEM, parent.umemHolders, umemHolders);
+        PMEM = share(parent.PMEM, parent.pmemHolders, pmemHolders);
+        SMEM = share(parent.SMEM, parent.smemHolders, smemHolders);
+        WMEM = new byte[256];
+        adoptDecoded(parent.decodedPMEM, parent.PMEM, decodedPMEM, PMEM);
+        adoptDecoded(parent.decodedUMEM, parent.UMEM, decodedUMEM, UMEM);
         //KMEM is immutable
         //IMEM doesn't exist
 
@@ -68,11 +90,34 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
         for(int i = 0; i < stats.length; i++) stats[i] = ub(DEFAULT_STAT_VALUE);
 
         int maxOffset = ARENA_SIZE / 4;
-        setX(parent.getX() + maxOffset * (Option.random.nextFloat()*2-1));
-        setY(parent.getY() + maxOffset * (Option.random.nextFloat()*2-1));
+        setX(parent.getX() + maxOffset * (parent.getRandom().nextDouble()*2-1));
+        setY(parent.getY() + maxOffset * (parent.getRandom().nextDouble()*2-1));
         setCogs(INITIAL_COGS);
     }
 
+    //Copy a Robot into another arena (see copyInto()): the same genome, stats, name and record, with pages of its own.
+    //Nothing of the original's is changed, not even its random stream, so it doesn't matter which thread does this.
+    protected GeneticRobot(Arena arena, GeneticRobot original) {
+        super(arena);
+
+        setName(original.getName());
+        setGeneration(original.getGeneration());
+        setFitness(original.getFitness());
+        setHue(original.getHue());
+
+        UMEM = copyMemory(original.UMEM, umemHolders);
+        PMEM = copyMemory(original.PMEM, pmemHolders);
+        SMEM = copyMemory(original.SMEM, smemHolders);
+        WMEM = original.WMEM.clone();
+
+        stats = original.stats.clone(); //UBytes never change, so sharing them is fine
+        setX(original.getX());
+        setY(original.getY());
+        setR(original.getR());
+        setCogs(original.getCogs());
+        setHealth(original.getHealth());
+    }
+
     //Create a Robot from a file
     public GeneticRobot(InputStream file, Arena arena) {
 
@@ -83,14 +128,9 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
         setGeneration(0);
 
         //1: Initialize memories.
-        UMEM = new UByte[256][];
-        PMEM = new UByte[256][];
-        SMEM = new UByte[256][];
-        WMEM = new UByte[256];
-
-        UMEM[0] = new UByte[256];
-        PMEM[0] = new UByte[256];
-        SMEM[0] = new UByte[256];
+        UMEM = new byte[256][];
+        PMEM = new byte[256][];
+        SMEM = new byte[256][];
 
 
         //3: Initialize the memories at 0
@@ -98,8 +138,7 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
         createMemory(UMEM, 0);
         createMemory(PMEM, 0);
 
-        WMEM = new UByte[256];
-        for(int i = 0; i < 256; i++) WMEM[i] = ub(0);
+        WMEM = new byte[256];
 
         //4: Grab actual values from file
         compile(file);
@@ -244,30 +283,30 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
                 try {
                     switch (loadMode) {
                         case 0:
-                            if (WMEM[loadIndex].val() != 0)
+                            if (val(WMEM[loadIndex]) != 0)
                                 throwCompileError("Registry at " + loadIndex + " already defined.");
-                            WMEM[loadIndex] = ub(Integer.parseInt(next));
+                            WMEM[loadIndex] = clamp(Integer.parseInt(next));
                             break;
                         case 1:
-                            if (SMEM[loadMemory][loadIndex].val() != 0)
+                            if (val(SMEM[loadMemory][loadIndex]) != 0)
                                 throwCompileError("Storage " + loadMemory + " at " + loadIndex + " already defined.");
                             if (loadIndex >= SMEM[loadMemory].length)
                                 throwCompileError("Storage " + loadMemory + " index out of bounds.");
-                            SMEM[loadMemory][loadIndex] = ub(Integer.parseInt(next));
+                            SMEM[loadMemory][loadIndex] = clamp(Integer.parseInt(next));
                             break;
                         case 2:
-                            if (PMEM[loadMemory][loadIndex].val() != 0)
+                            if (val(PMEM[loadMemory][loadIndex]) != 0)
                                 throwCompileError("Program " + loadMemory + " at " + loadIndex + " already defined.");
                             if (loadIndex >= PMEM[loadMemory].length)
                                 throwCompileError("Program " + loadMemory + " index out of bounds.");
-                            PMEM[loadMemory][loadIndex] = ub(Integer.parseInt(next));
+                            PMEM[loadMemory][loadIndex] = clamp(Integer.parseInt(next));
                             break;
                         case 3:
-                            if (UMEM[loadMemory][loadIndex].val() != 0)
+                            if (val(UMEM[loadMemory][loadIndex]) != 0)
                                 throwCompileError("Meta " + loadMemory + " at " + loadIndex + " already defined.");
                             if (loadIndex >= UMEM[loadMemory].length)
                                 throwCompileError("Meta " + loadMemory + " index out of bounds.");
-                            UMEM[loadMemory][loadIndex] = ub(Integer.parseInt(next));
+                            UMEM[loadMemory][loadIndex] = clamp(Integer.parseInt(next));
                             break;
                     }
                     loadIndex++;
@@ -291,18 +330,14 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
         //TODO Exiting immediately is not appropriate here; should throw an exception
     }
 
-    @Override
-    public void update() {
+    //Phase one of a tick: run the loaded P memory.
+    //Every GeneticRobot in the arena thinks at the same time, so this must only ever change the robot itself.
+    //Anything that reaches outside of it (firing, reproducing) is only recorded here and carried out in applyIntents().
+    void think() {
+        if(getAge() == 0 || getHealth() <= 0 || !isAlive()) return;
 
         double initialCogs = getCogs();
 
-        //Reload relevant properties
-        setWidth(Option.robotSize.getValue());
-        setHeight(Option.robotSize.getValue());
-
-        //Apply physics
-        applyPhysics();
-
         //Run the loaded P memory!
         runGenes(PMEM);
 
@@ -315,41 +350,144 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
         if(getCogs() <= 0) damage(1);
     }
 
+    @Override
+    public void update() {
+
+        //Reload relevant properties
+        setWidth(Option.robotSize.getValue());
+        setHeight(Option.robotSize.getValue());
+    }
+
+    @Override
+    void publish() {
+        super.publish();
+        seenFitness = fitness;
+    }
+
+    @Override
+    long stateHash() {
+        long hash = Arena.mix(super.stateHash() ^ Double.doubleToLongBits(fitness));
+        hash = Arena.mix(hash ^ generation);
+        hash = hashMemory(hash, UMEM);
+        hash = hashMemory(hash, PMEM);
+        hash = hashMemory(hash, SMEM);
+        for(byte b: WMEM) hash = Arena.mix(hash ^ val(b));
+        return hash;
+    }
+
+    private static long hashMemory(long hash, byte[][] memory) {
+        for(int i = 0; i < memory.length; i++) {
+            if(memory[i] == null) continue;
+            hash = Arena.mix(hash ^ i);
+            for(byte b: memory[i]) hash = Arena.mix(hash ^ val(b));
+        }
+        return hash;
+    }
 
-    void runGenes(UByte[][] genes) {
+    @Override
+    void applyIntents() {
+        super.applyIntents();
+        while(offspring > 0) {
+            offspring--;
+            add(new DefaultGeneticRobot(this, getArena()));
+        }
+    }
+
+
+    void runGenes(byte[][] genes) {
 
         setCogs(getCogs() - DIFFICULTY);
 
         CURRENT = genes;
         index = 0;
         loaded = 0;
+        if(GeneProfiler.isEnabled()) {
+            runGenesProfiled(genes, GeneProfiler.stripe());
+            return;
+        }
+        DecodedPage page = null;
+        int pageNumber = -1;
 
         while(index < genes.length) {
 
             if(getCogs() < 0) break;
 
-
-            if(genes[loaded][index] == null) {
-                System.err.println("Null gene");
+            //The last gene may have jumped to another page or rewritten this one.
+            if(page == null || page.stale || pageNumber != loaded) {
+                pageNumber = loaded;
+                page = decoded(genes, pageNumber);
+                if(page.compiled == null && ++page.runs >= PageCompiler.THRESHOLD) page.compiled = compiled(genes, pageNumber, page);
             }
-            Gene gene = KMEM[genes[loaded][index].val()];
-
-
-            try {
-                if(gene.getNumParameters() == 0) {
-                    gene.getMeaning().invoke(this);
-                } else if(gene.getNumParameters() == 1 && index < 255) {
-                    gene.getMeaning().invoke(this, genes[loaded][index+1].val());
-                } else if(gene.getNumParameters() == 2 && index < 254) {
-                    gene.getMeaning().invoke(this, genes[loaded][index+1].val(), genes[loaded][index+2].val());
-                } else if(index < 253){
-                    gene.getMeaning().invoke(this, genes[loaded][index+1].val(), genes[loaded][index+2].val(), genes[loaded][index+3].val());
+            int at = index;
+            Gene gene = page.genes[at];
+
+            //A hot page may run as compiled code instead, for as many instructions as it can.
+            if(page.compiled == null || !page.compiled.run(this, pageNumber)) {
+                if(gene == null) index += page.steps[at]; //Nothing lives at this opcode (or the ones after it)
+                else try {
+                    int a = at * 3;
+                    switch(page.arities[at]) {
+                        case 0: gene.invoke(this); break;
+                        case 1: gene.invoke(this, page.args[a]); break;
+                        case 2: gene.invoke(this, page.args[a], page.args[a+1]); break;
+                        case 3: gene.invoke(this, page.args[a], page.args[a+1], page.args[a+2]); break;
+                        default: break; //No room left on the page for its arguments
+                    }
+                    setCogs(getCogs() - gene.getCost());
+                    index += page.steps[at];
+                } catch (RuntimeException e) {
+                    System.err.println("Error when running gene " + gene + " with " + gene.getNumParameters() + " parameters");
+                    e.printStackTrace();
+                    //Charged and passed over like any other, or the same gene would only throw again next time round.
+                    setCogs(getCogs() - gene.getCost());
+                    index += page.steps[at];
                 }
+            }
+
+            if(index >= genes.length && stack.size() > 0) {
+                Point entry = stack.pop();
+                loaded = entry.x;
+                index = entry.y;
+            }
+        }
+
+    }
+
+
+
+    //runGenes() as the GeneProfiler sees it: the same thing, counted instruction by instruction.
+    //Compiled pages run many instructions in one go, so they're left out here.
+    private void runGenesProfiled(byte[][] genes, GeneProfiler.Stripe stripe) {
+        DecodedPage page = null;
+        int pageNumber = -1;
+
+        while(index < genes.length) {
+
+            if(getCogs() < 0) break;
+
+            if(page == null || page.stale || pageNumber != loaded) {
+                pageNumber = loaded;
+                page = decoded(genes, pageNumber);
+            }
+            int at = index;
+            Gene gene = page.genes[at];
+
+            if(gene == null) index += page.steps[at];
+            else try {
+                int opcode = val(page.source[at]);
+                double before = getCogs();
+                boolean timed = stripe.sample();
+                long start = timed? System.nanoTime() : 0;
+                call(gene, page, at);
+                if(timed) stripe.time(opcode, System.nanoTime() - start);
                 setCogs(getCogs() - gene.getCost());
-                index += 1 + gene.getNumParameters();
-            } catch (IllegalAccessException | InvocationTargetException e) {
+                stripe.count(opcode, before - getCogs());
+                index += page.steps[at];
+            } catch (RuntimeException e) {
                 System.err.println("Error when running gene " + gene + " with " + gene.getNumParameters() + " parameters");
                 e.printStackTrace();
+                setCogs(getCogs() - gene.getCost());
+                index += page.steps[at];
             }
 
             if(index >= genes.length && stack.size() > 0) {
@@ -358,26 +496,181 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
                 index = entry.y;
             }
         }
+    }
+
+    //The same as the switch in runGenes(), which is kept written out there so it's sure to be inlined.
+    private void call(Gene gene, DecodedPage page, int at) {
+        int a = at * 3;
+        switch(page.arities[at]) {
+            case 0: gene.invoke(this); break;
+            case 1: gene.invoke(this, page.args[a]); break;
+            case 2: gene.invoke(this, page.args[a], page.args[a+1]); break;
+            case 3: gene.invoke(this, page.args[a], page.args[a+1], page.args[a+2]); break;
+            default: break; //No room left on the page for its arguments
+        }
+    }
 
+    //What a hot page compiles to. Only pages in the PageTable are compiled, and the table keeps what they compile to,
+    //so there's one class for each distinct page being run however many robots run it, and it goes when the page does.
+    private CompiledPage compiled(byte[][] memory, int number, DecodedPage page) {
+        AtomicInteger holders = holdersOf(memory)[number];
+        return PageTable.isInterned(holders)? ((PageTable.Entry) holders).compiled(page): null;
     }
 
+    //P memory page [number] as runGenes() reads it.
+    DecodedPage decodedProgram(int number) {
+        return decoded(PMEM, number);
+    }
 
+    private DecodedPage decoded(byte[][] memory, int number) {
+        DecodedPage[] cache = (memory == PMEM)? decodedPMEM : (memory == UMEM)? decodedUMEM : null;
+        if(cache == null) return DecodedPage.decode(memory[number], KMEM);
 
-    //Instantiate memory number [number] as a UByte[256].
-    protected void createMemory(UByte[][] memory, int number) {
-        memory[number] = new UByte[256];
-        for(int i = 0; i < 256; i++) {
-            memory[number][i] = ub(0);
+        //A page that was replaced (deleted and defined again, say) is a different array, so that needs no store() to notice.
+        DecodedPage page = cache[number];
+        if(page == null || page.source != memory[number]) {
+            page = DecodedPage.decode(memory[number], KMEM);
+            cache[number] = page;
         }
+        return page;
+    }
+
+    //Write one cell of a memory. Genes that change P, U or S memory have to do it this way.
+    protected void store(byte[][] memory, int number, int address, byte value) {
+        if(memory[number][address] == value) return;
+
+        //Copy a page before the first write if anyone else still has it. Only writers ever take their
+        //name off a page, so once the count is down to one it's ours alone.
+        AtomicInteger[] holders = holdersOf(memory);
+        AtomicInteger sharers = holders[number];
+        if(sharers != null && sharers.get() > 1) {
+            memory[number] = memory[number].clone();
+            holders[number] = new AtomicInteger(1);
+            sharers.decrementAndGet();
+            Debug.logCount("Pages copied on write", 1);
+        }
+
+        memory[number][address] = value;
+        DecodedPage[] cache = (memory == PMEM)? decodedPMEM : (memory == UMEM)? decodedUMEM : null;
+        if(cache == null) return;
+        programWrites++;
+        if(cache[number] != null) {
+            cache[number].stale = true;
+            cache[number] = null;
+        }
+    }
+
+    //A child starts out with the same bytes as its parent, so it can start out with the same decoded pages too.
+    private static void adoptDecoded(DecodedPage[] from, byte[][] fromMemory, DecodedPage[] to, byte[][] toMemory) {
+        for(int i = 0; i < from.length; i++) {
+            DecodedPage page = from[i];
+            if(page != null && !page.stale && page.source == fromMemory[i] && toMemory[i] != null) to[i] = page.sharedWith(toMemory[i]);
+        }
+    }
+
+    //Instantiate memory number [number] as 256 zeroes.
+    protected void createMemory(byte[][] memory, int number) {
+        dropMemory(memory, number);
+        memory[number] = new byte[256];
+        holdersOf(memory)[number] = new AtomicInteger(1);
+    }
+
+    //Let go of memory number [number], whether or not anyone else still has it.
+    protected void dropMemory(byte[][] memory, int number) {
+        AtomicInteger[] holders = holdersOf(memory);
+        if(holders[number] != null) holders[number].decrementAndGet();
+        holders[number] = null;
+        memory[number] = null;
+    }
+
+    private AtomicInteger[] holdersOf(byte[][] memory) {
+        if(memory == PMEM) return pmemHolders;
+        if(memory == UMEM) return umemHolders;
+        if(memory == SMEM) return smemHolders;
+        throw new IllegalArgumentException("Not one of this robot's memories");
+    }
+
+    //A child starts out on its parent's pages, and only pays for the ones it (or the parent) goes on to write.
+    //Children are only ever made between ticks, so nobody is writing while the counts go up.
+    private static byte[][] share(byte[][] memory, AtomicInteger[] from, AtomicInteger[] to) {
+        int shared = 0;
+        for(int i = 0; i < memory.length; i++) {
+            if(memory[i] == null) continue;
+            if(from[i] == null) from[i] = new AtomicInteger(1);
+            to[i] = from[i];
+            to[i].incrementAndGet();
+            shared++;
+        }
+        Debug.logCount("Pages shared", shared);
+        return memory.clone();
+    }
+
+    //Swap every page for the PageTable's copy of it, and add them to [pages]. Returns how many pages this robot has.
+    //Like share(), only ever done between ticks.
+    int internPages(Set<byte[]> pages) {
+        return intern(UMEM, umemHolders, decodedUMEM, pages) + intern(PMEM, pmemHolders, decodedPMEM, pages) + intern(SMEM, smemHolders, null, pages);
+    }
+
+    private static int intern(byte[][] memory, AtomicInteger[] holders, DecodedPage[] cache, Set<byte[]> pages) {
+        int count = 0;
+        for(int i = 0; i < memory.length; i++) {
+            if(memory[i] == null) continue;
+            count++;
+            PageTable.Interned interned = PageTable.isInterned(holders[i])? null: PageTable.intern(memory[i], holders[i]);
+            if(interned != null) {
+                if(holders[i] != null) holders[i].decrementAndGet();
+                holders[i] = interned.holders;
+
+                //Same bytes, so the same instructions.
+                if(cache != null && cache[i] != null && cache[i].source == memory[i]) cache[i] = cache[i].sharedWith(interned.page);
+                memory[i] = interned.page;
+            }
+            pages.add(memory[i]);
+        }
+        return count;
+    }
+
+    //Whether two robots have exactly the same U, P and S memory. Cheap once both have been through the PageTable,
+    //since then a page can be told apart by reference alone.
+    public boolean hasSameGenome(GeneticRobot other) {
+        return sameMemory(UMEM, umemHolders, other.UMEM, other.umemHolders)
+                && sameMemory(PMEM, pmemHolders, other.PMEM, other.pmemHolders)
+                && sameMemory(SMEM, smemHolders, other.SMEM, other.smemHolders);
+    }
+
+    private static boolean sameMemory(byte[][] a, AtomicInteger[] aHolders, byte[][] b, AtomicInteger[] bHolders) {
+        for(int i = 0; i < a.length; i++) {
+            if(a[i] == b[i]) continue;
+            if(a[i] == null || b[i] == null) return false;
+            if(PageTable.isInterned(aHolders[i]) && PageTable.isInterned(bHolders[i])) return false;
+            if(!Arrays.equals(a[i], b[i])) return false;
+        }
+        return true;
+    }
+
+    //A copy of every page, for a Robot that mustn't share with the original.
+    private static byte[][] copyMemory(byte[][] memory, AtomicInteger[] holders) {
+        byte[][] copy = new byte[memory.length][];
+        for(int i = 0; i < memory.length; i++) {
+            if(memory[i] == null) continue;
+            copy[i] = memory[i].clone();
+            holders[i] = new AtomicInteger(1);
+        }
+        return copy;
+    }
+
+    //This Robot as it is now, but belonging to [arena]. Unlike a child, nothing about it is new.
+    public GeneticRobot copyInto(Arena arena) {
+        return new DefaultGeneticRobot(arena, this);
     }
 
     //Destroy memory number [number], making it null.
-    void destroyMemory(UByte[][] memory, UByte number) {
+    void destroyMemory(byte[][] memory, int number) {
         //Never ever destroy memory 0.
-        if(number.val() != 0) {
-            memory[number.val()] = null;
+        if(number != 0) {
+            dropMemory(memory, number);
         }
-        if(number.val() == loaded) loaded = 0;
+        if(number == loaded) loaded = 0;
     }
 
     public void onBirth() {
@@ -386,11 +679,10 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
     }
 
     void reproduce() {
-        Robot offspring = new DefaultGeneticRobot(this, getArena());
-        add(offspring);
+        offspring++;
     }
 
-    private String activeMemoryToString(UByte[] genes, boolean color) {
+    private String activeMemoryToString(byte[] genes, boolean color) {
         if(genes == null) return "§r No memory exists here.";
 
         String result = "";
@@ -400,19 +692,17 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
         for(int i = 0; i < genes.length-3; i++) {
             //For every entry in this list of genes (excluding the ones at the end that don't have enough others after them as arguments)
 
-            if(genes[i] != null) { //we really can't afford to lose track of null genes
-                if (genes[i].val() == 0x00)
-                    continue; //Don't even bother with opcode 0x00, standing for "do nothing"
-                if (KMEM[genes[i].val()] == null)
-                    continue; //If the opcode doesn't actually stand for something meaningful, skip it too
-            }
+            if (val(genes[i]) == 0x00)
+                continue; //Don't even bother with opcode 0x00, standing for "do nothing"
+            if (KMEM[val(genes[i])] == null)
+                continue; //If the opcode doesn't actually stand for something meaningful, skip it too
 
             //Since everything appears to be in order, let's try to parse that as a gene. (Normally we'd run it.)
             result += "§k" + i + " ";
-            result += (genes[i] == null)? "§rNULL \n" : "§g" + KMEM[genes[i].val()].getMeaning().getName() + " §k(";
-            result += (genes[i+1] == null)? "§rNULL \n" : "§b" + genes[i+1].val() + " §k[" + WMEM[genes[i+1].val()].val() + "], ";
-            result += (genes[i+2] == null)? "§rNULL \n" : "§b" + genes[i+2].val() + " §k[" + WMEM[genes[i+2].val()].val() + "],";
-            result += (genes[i+3] == null)? "§rNULL \n" : "§b" + genes[i+3].val() + " §k[" + WMEM[genes[i+3].val()].val() + "]) \n";
+            result += "§g" + KMEM[val(genes[i])].getMeaning().getName() + " §k(";
+            result += "§b" + val(genes[i+1]) + " §k[" + val(WMEM[val(genes[i+1])]) + "], ";
+            result += "§b" + val(genes[i+2]) + " §k[" + val(WMEM[val(genes[i+2])]) + "],";
+            result += "§b" + val(genes[i+3]) + " §k[" + val(WMEM[val(genes[i+3])]) + "]) \n";
 
 
             //Assuming nothing went wrong we've completed a command by now. (If something did go wrong, we'll at least have a stack trace.)
@@ -426,13 +716,13 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
 
         return result;
     }
-    private String passiveMemoryToString(UByte[] genes, boolean color) {
+    private String passiveMemoryToString(byte[] genes, boolean color) {
         if(genes == null) return "§r No memory exists here.";
         String result = "§b";
 
         for(int i = 0; i < genes.length; i++) {
             if(i%4 == 0) result += "\n" + i/16 + i%16 + "\t";
-            result += "§k|  " + genes[i].val() +"\t§b";
+            result += "§k|  " + val(genes[i]) +"\t§b";
         }
 
         if(! color) {
@@ -447,28 +737,20 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
     public String stringSMEM(int memory) {return passiveMemoryToString(SMEM[memory], true);}
     public String stringWMEM() {return passiveMemoryToString(WMEM, true);}
 
-    static UByte randomAddress(UByte[] memory) {
-
-        int totalExist = 0;
-        for(UByte u: memory) if(u != ub(0)) totalExist++;
-
-        int selection = (int) (totalExist * Option.random.nextFloat());
-        int i;
-        for(i = 0; selection > 0; i++) {
-            if(memory[i] != ub(0)) selection--;
-        }
-        return ub(i);
+    //Any address in the memory, each as likely as the next.
+    static byte randomAddress(byte[] memory, SplittableRandom random) {
+        return clamp((int) (memory.length * random.nextDouble()));
     }
-    static UByte randomGene() {
+    static byte randomGene(SplittableRandom random, int[] weights) {
 
-        int rand = (int) (Option.random.nextFloat() * totalKWeight);
+        int rand = (int) (random.nextDouble() * totalKWeight);
         int selection = 0;
         while(rand > 0 && selection < KMEM.length) {
-            if(KMEM[selection] != null) rand -= KMEM[selection].getWeight();
+            if(KMEM[selection] != null) rand -= weights[selection];
             selection++;
         }
 
-        return ub(selection);
+        return clamp(selection);
 
 
     }
@@ -497,17 +779,18 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
 
     @Override
     public int compareTo(GeneticRobot o) {
-        return (int) (fitness - o.getFitness());
+        return Double.compare(fitness, o.getFitness());
     }
     public double getFitness() { return fitness; }
+    public double getSeenFitness() { return seenFitness; }
     public void setFitness(double fitness) { this.fitness = fitness; }
     public int getGeneration() { return generation; }
     public void setGeneration(int generation) { this.generation = generation; }
 
-    public UByte wmemAt(int i) {return WMEM[i];}
-    public UByte smemAt(int i, int j) {return SMEM[i][j];}
-    public UByte pmemAt(int i, int j) {return PMEM[i][j];}
-    public UByte umemAt(int i, int j) {return UMEM[i][j];}
+    public int wmemAt(int i) {return val(WMEM[i]);}
+    public int smemAt(int i, int j) {return val(SMEM[i][j]);}
+    public int pmemAt(int i, int j) {return val(PMEM[i][j]);}
+    public int umemAt(int i, int j) {return val(UMEM[i][j]);}
 
     @Override
     public LivePanel toPanel() {
@@ -533,9 +816,9 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
 
                     int index = 0;
                     int drawLocation = 0;
-                    UByte[] memory = (memoryType.getSelectedItem().equals("Program"))? PMEM[(int) memoryNumber.getValue()] : UMEM[(int) memoryNumber.getValue()];
+                    byte[] memory = (memoryType.getSelectedItem().equals("Program"))? PMEM[(int) memoryNumber.getValue()] : UMEM[(int) memoryNumber.getValue()];
                     while(index < memory.length) {
-                        Gene gene = KMEM[memory[index].val()];
+                        Gene gene = KMEM[val(memory[index])];
 
                         if(gene.getMeaning().getName().equals("_NO") || gene.getMeaning().getName().equals("_UNDEF")) {
                             index++;
@@ -546,17 +829,17 @@ public class GeneticRobot extends Robot implements Comparable<GeneticRobot>{
                             g.drawString(gene.getMeaning().getName(), 10, 30+25*drawLocation);
                         }
                         else if(gene.getNumParameters() == 1 && index < memory.length-1) {
-                            String arguments = "(" + memory[index+1] + ")";
+                            String arguments = "(" + Integer.toHexString(val(memory[index+1])) + ")";
                             g.drawString(gene.getMeaning().getName() + arguments, 10, 30+25*drawLocation);
                             index += 1;
                         }
                         else if(gene.getNumParameters() == 2 && index < memory.length-2) {
-                            String arguments = "(" + memory[index+1] + ", " + memory[index+2] + ")";
+                            String arguments = "(" + Integer.toHexString(val(memory[index+1])) + ", " + Integer.toHexString(val(memory[index+2])) + ")";
                             g.drawString(gene.getMeaning().getName() + arguments, 10, 30+25*drawLocation);
                             index += 2;
                         }
                         else if(index < memory.length-3) {
-                            String arguments = "(" + memory[index+1] + ", " + memory[index+2] + ", " + memory[index+3] + ")";
+                            String arguments = "(" + Integer.toHexString(val(memory[index+1])) + ", " + Integer.toHexString(val(memory[index+2])) + ", " + Integer.toHexString(val(memory[index+3])) + ")";
                             g.drawString(gene.getMeaning().getName() + arguments, 10, 30+25*drawLocation);
                             index += 3;
                         }
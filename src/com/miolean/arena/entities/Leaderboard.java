@@ -0,0 +1,180 @@
+package com.miolean.arena.entities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fittest GeneticRobots seen so far, dead or alive, up to some capacity. New Robots are bred from these.
+ *
+ * It's a min-heap on fitness, so the worst of the best is always on top, ready to be pushed out by
+ * anyone who beats it. The heap holds slot numbers rather than Robots; a Robot keeps the same slot for
+ * as long as it's on the board, which is what its alias (see aliasOf()) is made from.
+ */
+public class Leaderboard {
+
+    //Aliases count down from here. Anything above it (-1 in particular, which is what an Entity starts out as) isn't an alias.
+    private static final int ALIAS_OFFSET = 201;
+
+    private int capacity;
+    private int size = 0;
+
+    private GeneticRobot[] robots = new GeneticRobot[16]; //By slot
+    private double[] fitness = new double[16]; //By slot, as of the last update (the heap is ordered on these)
+    private int[] position = new int[16]; //By slot: where it is in the heap
+    private int[] heap = new int[16]; //Slots
+    private final Map<GeneticRobot, Integer> slots = new IdentityHashMap<>();
+
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+    private int nextSlot = 0;
+
+    public Leaderboard(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    //Put a Robot on the board if there's room, or if it beats the worst one there. If it's already on, just update it.
+    public void offer(GeneticRobot r) {
+        Integer slot = slots.get(r);
+        if(slot != null) {
+            update(slot, r.getFitness());
+            return;
+        }
+
+        if(size >= capacity) {
+            if(r.getFitness() <= fitness[heap[0]]) return;
+            removeAt(0);
+        }
+        insert(r);
+    }
+
+    //Take note of a new fitness for a Robot that's on the board.
+    public void update(GeneticRobot r) {
+        Integer slot = slots.get(r);
+        if(slot != null) update(slot, r.getFitness());
+    }
+
+    public boolean contains(GeneticRobot r) { return slots.containsKey(r); }
+    public int size() { return size; }
+    public int getCapacity() { return capacity; }
+
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        while(size > this.capacity) removeAt(0);
+    }
+
+    //The i-th Robot on the board, in no particular order.
+    public GeneticRobot get(int i) { return robots[heap[i]]; }
+
+    public GeneticRobot getWorst() { return size == 0? null: robots[heap[0]]; }
+
+    public GeneticRobot getBest() {
+        int best = -1;
+        for(int i = 0; i < size; i++) {
+            if(best < 0 || fitness[heap[i]] > fitness[best]) best = heap[i];
+        }
+        return best < 0? null: robots[best];
+    }
+
+    //Everyone on the board, worst first.
+    public List<GeneticRobot> toSortedList() {
+        List<GeneticRobot> result = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            GeneticRobot r = robots[heap[i]];
+            if(r != null) result.add(r);
+        }
+        result.sort(null);
+        return result;
+    }
+
+    //A (negative) UUID that finds this Robot through Arena.fromUUID() for as long as it's on the board,
+    //even once it's dead and its real UUID finds nothing. 0 if it isn't on the board.
+    public int aliasOf(GeneticRobot r) {
+        Integer slot = slots.get(r);
+        return (slot == null)? 0: -(slot + ALIAS_OFFSET);
+    }
+
+    public GeneticRobot fromAlias(int alias) {
+        int slot = -alias - ALIAS_OFFSET;
+        if(slot < 0 || slot >= nextSlot) return null;
+        return robots[slot];
+    }
+
+    private void insert(GeneticRobot r) {
+        int slot;
+        if(freeCount > 0) slot = freeSlots[--freeCount];
+        else {
+            if(nextSlot == robots.length) grow();
+            slot = nextSlot++;
+        }
+
+        robots[slot] = r;
+        fitness[slot] = r.getFitness();
+        slots.put(r, slot);
+
+        heap[size] = slot;
+        position[slot] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    private void removeAt(int index) {
+        int slot = heap[index];
+        slots.remove(robots[slot]);
+        robots[slot] = null;
+        if(freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+
+        size--;
+        if(index == size) return;
+        heap[index] = heap[size];
+        position[heap[index]] = index;
+        siftDown(index);
+        siftUp(index);
+    }
+
+    private void update(int slot, double newFitness) {
+        double old = fitness[slot];
+        fitness[slot] = newFitness;
+        if(newFitness < old) siftUp(position[slot]);
+        else if(newFitness > old) siftDown(position[slot]);
+    }
+
+    private void siftUp(int index) {
+        int slot = heap[index];
+        while(index > 0) {
+            int parent = (index - 1) / 2;
+            if(fitness[heap[parent]] <= fitness[slot]) break;
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = slot;
+        position[slot] = index;
+    }
+
+    private void siftDown(int index) {
+        int slot = heap[index];
+        while(true) {
+            int child = 2 * index + 1;
+            if(child >= size) break;
+            if(child + 1 < size && fitness[heap[child + 1]] < fitness[heap[child]]) child++;
+            if(fitness[heap[child]] >= fitness[slot]) break;
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = slot;
+        position[slot] = index;
+    }
+
+    private void grow() {
+        int length = robots.length * 2;
+        robots = Arrays.copyOf(robots, length);
+        fitness = Arrays.copyOf(fitness, length);
+        position = Arrays.copyOf(position, length);
+        heap = Arrays.copyOf(heap, length);
+    }
+}
@@ -0,0 +1,143 @@
+package com.miolean.arena.entities;
+
+import java.util.Arrays;
+
+import static com.miolean.arena.entities.Arena.ARENA_SIZE;
+import static com.miolean.arena.entities.Arena.BORDER;
+
+/**
+ * Position, rotation, velocity and acceleration of every Entity in an Arena, kept as parallel arrays
+ * instead of fields scattered across the heap. Each Entity in the arena owns one slot; its getters and
+ * setters read and write that slot. Slots are kept dense (removing an Entity moves the last one into
+ * its place), so integrating everything is one straight pass over a few arrays.
+ *
+ * Out of the arena an Entity keeps its motion in its own fields, and gets it back when it leaves.
+ */
+class MotionStore {
+
+    private final static double DRAG = 0.1; //Same as Entity.DRAG
+    private final static double RDRAG = 0.5;
+
+    double[] x = new double[64];
+    double[] y = new double[64];
+    double[] r = new double[64];
+    double[] velX = new double[64];
+    double[] velY = new double[64];
+    double[] velR = new double[64];
+    double[] accX = new double[64];
+    double[] accY = new double[64];
+    double[] accR = new double[64];
+
+    //Whether a slot moves this tick: an Entity sits still on the tick it's born, and doesn't move once it's out of health.
+    boolean[] live = new boolean[64];
+
+    private Entity[] owners = new Entity[64];
+    private int count = 0;
+
+    //Move an Entity's motion into the store.
+    void attach(Entity e) {
+        if(e.motion == this) return;
+        if(count == owners.length) grow();
+
+        int slot = count++;
+        x[slot] = e.getX();
+        y[slot] = e.getY();
+        r[slot] = e.getR();
+        velX[slot] = e.getVelX();
+        velY[slot] = e.getVelY();
+        velR[slot] = e.getVelR();
+        accX[slot] = e.getAccX();
+        accY[slot] = e.getAccY();
+        accR[slot] = e.getAccR();
+        owners[slot] = e;
+
+        e.motion = this;
+        e.slot = slot;
+        e.refreshLive();
+    }
+
+    //Hand an Entity its motion back, and fill the hole with the last slot.
+    void detach(Entity e) {
+        if(e.motion != this) return;
+        int slot = e.slot;
+
+        e.motion = null;
+        e.slot = -1;
+        e.setX(x[slot]);
+        e.setY(y[slot]);
+        e.setR(r[slot]);
+        e.setVelX(velX[slot]);
+        e.setVelY(velY[slot]);
+        e.setVelR(velR[slot]);
+        e.setAccX(accX[slot]);
+        e.setAccY(accY[slot]);
+        e.setAccR(accR[slot]);
+
+        int last = --count;
+        if(slot != last) {
+            x[slot] = x[last];
+            y[slot] = y[last];
+            r[slot] = r[last];
+            velX[slot] = velX[last];
+            velY[slot] = velY[last];
+            velR[slot] = velR[last];
+            accX[slot] = accX[last];
+            accY[slot] = accY[last];
+            accR[slot] = accR[last];
+            live[slot] = live[last];
+            owners[slot] = owners[last];
+            owners[slot].slot = slot;
+        }
+        owners[last] = null;
+    }
+
+    //Drag, integrate and bounce off the border, for every live slot. Does exactly what Entity.applyPhysics() does.
+    void integrate() {
+        final double[] x = this.x, y = this.y, r = this.r;
+        final double[] velX = this.velX, velY = this.velY, velR = this.velR;
+        final double[] accX = this.accX, accY = this.accY, accR = this.accR;
+        final boolean[] live = this.live;
+        final double low = BORDER;
+        final double high = ARENA_SIZE - BORDER;
+
+        for(int i = 0; i < count; i++) {
+            if(! live[i]) continue;
+
+            double vx = velX[i] - DRAG * velX[i] + accX[i];
+            double vy = velY[i] - DRAG * velY[i] + accY[i];
+            double vr = velR[i] - RDRAG * velR[i] + accR[i];
+            double px = x[i] + vx;
+            double py = y[i] + vy;
+
+            r[i] = r[i] % 6.28 + vr;
+            velR[i] = vr;
+
+            if(px > high) { px = high; vx = -vx; }
+            if(px < low) { px = low; vx = -vx; }
+            if(py > high) { py = high; vy = -vy; }
+            if(py < low) { py = low; vy = -vy; }
+
+            x[i] = px;
+            y[i] = py;
+            velX[i] = vx;
+            velY[i] = vy;
+        }
+    }
+
+    int size() { return count; }
+
+    private void grow() {
+        int length = owners.length * 2;
+        x = Arrays.copyOf(x, length);
+        y = Arrays.copyOf(y, length);
+        r = Arrays.copyOf(r, length);
+        velX = Arrays.copyOf(velX, length);
+        velY = Arrays.copyOf(velY, length);
+        velR = Arrays.copyOf(velR, length);
+        accX = Arrays.copyOf(accX, length);
+        accY = Arrays.copyOf(accY, length);
+        accR = Arrays.copyOf(accR, length);
+        live = Arrays.copyOf(live, length);
+        owners = Arrays.copyOf(owners, length);
+    }
+}
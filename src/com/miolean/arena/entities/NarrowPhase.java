@@ -0,0 +1,140 @@
+package com.miolean.arena.entities;
+
+/**
+ * Exact overlap tests for the shapes Entities come in: convex polygons (as plain coordinate arrays,
+ * the way Polygon keeps them) and circles. Shapes that only touch count as overlapping.
+ *
+ * Two convex polygons are apart exactly when some line separates them, and if there is one it's
+ * parallel to one of their edges (the Separating Axis Theorem). So it's enough to project both onto
+ * each edge normal and look for a gap. Unlike checking whether any corner of one is inside the other,
+ * that also catches two shapes crossing edge over edge, like a rotating Wall passing through a Bullet.
+ */
+final class NarrowPhase {
+
+    private NarrowPhase() {}
+
+    static boolean polygons(int[] ax, int[] ay, int an, int[] bx, int[] by, int bn) {
+        return !separatedByEdgesOf(ax, ay, an, bx, by, bn) && !separatedByEdgesOf(bx, by, bn, ax, ay, an);
+    }
+
+    static boolean circles(double ax, double ay, double ar, double bx, double by, double br) {
+        double dx = ax - bx;
+        double dy = ay - by;
+        return dx*dx + dy*dy <= (ar + br) * (ar + br);
+    }
+
+    //A circle overlaps a convex polygon if its center is inside, or if some edge comes within a radius of the center.
+    static boolean circlePolygon(double cx, double cy, double radius, int[] xs, int[] ys, int n) {
+        if(n == 0) return false;
+
+        boolean positive = false;
+        boolean negative = false;
+        double r2 = radius * radius;
+
+        for(int i = 0, j = n - 1; i < n; j = i++) {
+            double x1 = xs[j], y1 = ys[j];
+            double ex = xs[i] - x1;
+            double ey = ys[i] - y1;
+            double px = cx - x1;
+            double py = cy - y1;
+
+            //Which side of this edge the center is on.
+            double cross = ex*py - ey*px;
+            if(cross > 0) positive = true;
+            else if(cross < 0) negative = true;
+
+            //How far the center is from the nearest point on the edge.
+            double length2 = ex*ex + ey*ey;
+            double t = (length2 == 0)? 0: Math.max(0, Math.min(1, (px*ex + py*ey) / length2));
+            double dx = px - t*ex;
+            double dy = py - t*ey;
+            if(dx*dx + dy*dy <= r2) return true;
+        }
+
+        //Always on the same side of the edges means the center is inside.
+        return positive != negative;
+    }
+
+    //Sweeps: how far along a move from (cx, cy) by (dx, dy) a circle first touches something, from 0 (already
+    //touching) to 1 (only at the very end), or NO_IMPACT if it never does. Fast things check this way so they
+    //can't skip over something between one tick and the next.
+    static final double NO_IMPACT = Double.POSITIVE_INFINITY;
+
+    static double sweepCircle(double cx, double cy, double dx, double dy, double radius, double ox, double oy, double otherRadius) {
+        double reach = radius + otherRadius;
+        double fx = cx - ox;
+        double fy = cy - oy;
+        double c = fx*fx + fy*fy - reach*reach;
+        if(c <= 0) return 0;
+
+        //Solve |f + t*d| = reach for the first t.
+        double a = dx*dx + dy*dy;
+        double b = 2 * (fx*dx + fy*dy);
+        if(a == 0 || b >= 0) return NO_IMPACT; //Not moving, or moving away
+        double discriminant = b*b - 4*a*c;
+        if(discriminant < 0) return NO_IMPACT;
+        double t = (-b - Math.sqrt(discriminant)) / (2*a);
+        return (t <= 1)? t: NO_IMPACT;
+    }
+
+    //Against a convex polygon the circle either first meets the flat of an edge or one of the corners.
+    static double sweepPolygon(double cx, double cy, double dx, double dy, double radius, int[] xs, int[] ys, int n) {
+        if(n == 0) return NO_IMPACT;
+        if(circlePolygon(cx, cy, radius, xs, ys, n)) return 0;
+
+        double best = NO_IMPACT;
+        for(int i = 0, j = n - 1; i < n; j = i++) {
+            best = Math.min(best, sweepCircle(cx, cy, dx, dy, radius, xs[j], ys[j], 0));
+
+            double ex = xs[i] - xs[j];
+            double ey = ys[i] - ys[j];
+            double length = Math.sqrt(ex*ex + ey*ey);
+            if(length == 0) continue;
+
+            //The edge's normal, pointing at the side the circle starts on.
+            double nx = -ey / length;
+            double ny = ex / length;
+            double distance = nx*(cx - xs[j]) + ny*(cy - ys[j]);
+            if(distance < 0) {
+                nx = -nx;
+                ny = -ny;
+                distance = -distance;
+            }
+
+            double approach = -(nx*dx + ny*dy);
+            if(approach <= 0) continue;
+            double t = (distance - radius) / approach;
+            if(t < 0 || t > 1 || t >= best) continue;
+
+            //Only counts if the circle is alongside the edge at that point, not past one of its ends.
+            double along = ((cx + t*dx - xs[j])*ex + (cy + t*dy - ys[j])*ey) / (length*length);
+            if(along >= 0 && along <= 1) best = t;
+        }
+        return best;
+    }
+
+    //Whether one of p's edge normals has p and q projecting onto it without overlapping.
+    private static boolean separatedByEdgesOf(int[] px, int[] py, int pn, int[] qx, int[] qy, int qn) {
+        for(int i = 0, j = pn - 1; i < pn; j = i++) {
+            long nx = py[j] - py[i];
+            long ny = px[i] - px[j];
+
+            long pMin = Long.MAX_VALUE, pMax = Long.MIN_VALUE;
+            for(int k = 0; k < pn; k++) {
+                long d = nx*px[k] + ny*py[k];
+                if(d < pMin) pMin = d;
+                if(d > pMax) pMax = d;
+            }
+
+            long qMin = Long.MAX_VALUE, qMax = Long.MIN_VALUE;
+            for(int k = 0; k < qn; k++) {
+                long d = nx*qx[k] + ny*qy[k];
+                if(d < qMin) qMin = d;
+                if(d > qMax) qMax = d;
+            }
+
+            if(pMax < qMin || qMax < pMin) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,465 @@
+package com.miolean.arena.entities;
+
+import com.miolean.arena.framework.Debug;
+import com.miolean.arena.genetics.Gene;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.miolean.arena.framework.UByte.val;
+
+/**
+ * Turns a DecodedPage into a CompiledPage: a class written out byte by byte that does what the
+ * interpreter would. It's loaded by a class loader of its own so it can be thrown away along with the
+ * page, which keeps it (see PageTable).
+ *
+ * The instructions are split into blocks of a few each, one method per block, which can be entered at
+ * any of them. Inside, each instruction is laid out as
+ *
+ *     if(enter(robot, at)) return -1;                //out of cogs
+ *     robot._GENE(arg0, arg1, arg2);                 //the gene itself, arguments and all as constants
+ *     next = advance(robot, cost, step, number, w);  //charge its cost, move on
+ *     if(next != at + step) return next;             //jumped (or -1: hand back to the interpreter)
+ *
+ * falling through to the next one until the end of the block. run() takes whatever comes back and calls
+ * the block with that address in it.
+ *
+ * Code is only made for the addresses a program can reach by running straight on from the first few.
+ * Anywhere else, it hands back.
+ */
+final class PageCompiler {
+
+    //How many times a program has to start on a page before it's compiled. Only pages in the PageTable are.
+    static final int THRESHOLD = 64;
+
+    //Instructions per method. The JIT stops inlining into a method once it's grown past 8000 bytes of
+    //bytecode all told, so the genes are only inlined into small ones.
+    private static final int BLOCK_SIZE = 16;
+
+    private static final String SUPER = "com/miolean/arena/entities/CompiledPage";
+    private static final String ROBOT = "Lcom/miolean/arena/entities/GeneticRobot;";
+    private static final AtomicLong count = new AtomicLong();
+
+    private PageCompiler() {}
+
+    //The compiled page, or null if it can't be compiled (which only means it keeps being interpreted).
+    static CompiledPage compile(DecodedPage page) {
+        try {
+            String name = "com.miolean.arena.entities.GeneratedPage" + count.incrementAndGet();
+            byte[] bytes = new ClassFile(name.replace('.', '/'), page).toBytes();
+            if(bytes == null) return null;
+            Class<?> result = new Loader().define(name, bytes);
+            Debug.logCount("Pages compiled", 1);
+            return (CompiledPage) result.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | IOException e) {
+            System.err.println("Couldn't compile a page; it'll stay interpreted (" + e + ")");
+            return null;
+        }
+    }
+
+    private static final class Loader extends ClassLoader {
+        Loader() {
+            super(CompiledPage.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    //Just enough of the class file format for one constructor and run(). Version 49 class files don't
+    //need stack map frames, which saves working them out for every jump.
+    private static final class ClassFile {
+
+        private static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+        private static final int ILOAD = 0x15, ISTORE = 0x36, ASTORE = 0x3a, ALOAD = 0x19;
+        private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ILOAD_2 = 0x1c, ILOAD_3 = 0x1d, ISTORE_3 = 0x3e;
+        private static final int ICONST_M1 = 0x02, ICONST_0 = 0x03, ICONST_1 = 0x04, SIPUSH = 0x11, LDC2_W = 0x14, DUP = 0x59;
+        private static final int IFLT = 0x9b, IFNE = 0x9a, IF_ICMPNE = 0xa0, GOTO = 0xa7, TABLESWITCH = 0xaa;
+        private static final int IRETURN = 0xac, RETURN = 0xb1;
+        private static final int INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, CHECKCAST = 0xc0;
+
+        //block(robot, number, writes, at), and the locals it (and run()) keeps
+        private static final String BLOCK = "(" + ROBOT + "III)I";
+        private static final int NEXT = 4, EXCEPTION = 5, OPCODE = 6, STEP = 7;
+
+        private final String name;
+        private final DecodedPage page;
+
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final DataOutputStream poolOut = new DataOutputStream(pool);
+        private final Map<String, Integer> constants = new HashMap<>();
+        private int poolSize = 1;
+
+        private Code code;
+
+        ClassFile(String name, DecodedPage page) {
+            this.name = name;
+            this.page = page;
+        }
+
+        byte[] toBytes() throws IOException {
+            int thisClass = classRef(name);
+            int superClass = classRef(SUPER);
+
+            List<byte[]> methods = new ArrayList<>();
+            methods.add(constructor());
+            List<List<Integer>> blocks = blocks();
+            methods.add(run(blocks));
+            for(int i = 0; i < blocks.size(); i++) {
+                byte[] block = block(i, blocks.get(i));
+                if(block == null) return null;
+                methods.add(block);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolSize);
+            out.write(pool.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); //Interfaces
+            out.writeShort(0); //Fields
+            out.writeShort(methods.size());
+            for(byte[] method: methods) out.write(method);
+            out.writeShort(0); //Attributes
+            return bytes.toByteArray();
+        }
+
+        private byte[] constructor() throws IOException {
+            code = new Code();
+            code.op(ALOAD_0);
+            code.op(INVOKESPECIAL).u2(methodRef(SUPER, "<init>", "()V"));
+            code.op(RETURN);
+            return method("<init>", "()V", 1, 1);
+        }
+
+        //run() only finds the block for robot.index and calls it, again and again until one hands back.
+        private byte[] run(List<List<Integer>> blocks) throws IOException {
+            code = new Code();
+            int dispatch = code.label();
+            int handBack = code.label();
+            int nothingHere = code.label();
+            int[] calls = new int[blocks.size()];
+            for(int i = 0; i < calls.length; i++) calls[i] = code.label();
+
+            int[] first = new int[page.genes.length];
+            int[] after = new int[page.genes.length];
+            Arrays.fill(first, nothingHere);
+            Arrays.fill(after, handBack);
+            for(int i = 0; i < blocks.size(); i++) {
+                for(int at: blocks.get(i)) {
+                    first[at] = calls[i];
+                    after[at] = calls[i];
+                }
+            }
+
+            code.op(ALOAD_1).op(INVOKESTATIC).u2(methodRef(SUPER, "writes", "(" + ROBOT + ")I")).op(ISTORE_3);
+            code.op(ALOAD_1).op(INVOKESTATIC).u2(methodRef(SUPER, "index", "(" + ROBOT + ")I")).op(ISTORE).u1(NEXT);
+            code.op(ILOAD).u1(NEXT);
+            code.tableswitch(nothingHere, first);
+
+            code.mark(dispatch);
+            code.op(ILOAD).u1(NEXT);
+            code.tableswitch(handBack, after);
+
+            for(int i = 0; i < calls.length; i++) {
+                code.mark(calls[i]);
+                code.op(ALOAD_0).op(ALOAD_1).op(ILOAD_2).op(ILOAD_3).op(ILOAD).u1(NEXT);
+                code.op(INVOKEVIRTUAL).u2(methodRef(name, "block" + i, BLOCK));
+                code.op(DUP).op(ISTORE).u1(NEXT);
+                code.jump(IFLT, handBack);
+                code.jump(GOTO, dispatch);
+            }
+
+            code.mark(handBack);
+            code.op(ICONST_1).op(IRETURN);
+            code.mark(nothingHere);
+            code.op(ICONST_0).op(IRETURN);
+
+            return method("run", "(" + ROBOT + "I)Z", 5, 5);
+        }
+
+        //One block of instructions, entered at any of them. Returns where to go next, or -1 to hand back.
+        private byte[] block(int number, List<Integer> addresses) throws IOException {
+            code = new Code();
+            int leave = code.label();
+            int handBack = code.label();
+            int handler = code.label();
+            int low = addresses.get(0);
+            int high = addresses.get(addresses.size() - 1);
+            int[] labels = new int[high - low + 1];
+            Arrays.fill(labels, handBack);
+            for(int at: addresses) labels[at - low] = code.label();
+
+            code.op(ILOAD).u1(NEXT);
+            code.tableswitch(handBack, labels, low);
+
+            for(int at: addresses) {
+                code.mark(labels[at - low]);
+                code.op(ALOAD_1).sipush(at).op(INVOKESTATIC).u2(methodRef(SUPER, "enter", "(" + ROBOT + "I)Z"));
+                code.jump(IFNE, handBack);
+
+                Gene gene = page.genes[at];
+                int step = page.steps[at];
+                int next = at + step;
+                int fallthrough = (next <= high && labels[next - low] != handBack)? labels[next - low] : leave;
+
+                if(gene == null) {
+                    code.op(ALOAD_1).sipush(next).op(INVOKESTATIC).u2(methodRef(SUPER, "skip", "(" + ROBOT + "I)V"));
+                    code.sipush(next).op(ISTORE).u1(NEXT);
+                    code.jump(GOTO, fallthrough);
+                    continue;
+                }
+
+                code.sipush(val(page.source[at])).op(ISTORE).u1(OPCODE);
+                code.sipush(step).op(ISTORE).u1(STEP);
+                int arity = page.arities[at];
+                if(arity != DecodedPage.NO_CALL) {
+                    Method meaning = gene.getMeaning();
+                    String owner = meaning.getDeclaringClass().getName().replace('.', '/');
+                    StringBuilder descriptor = new StringBuilder("(");
+                    for(Class<?> type: meaning.getParameterTypes()) {
+                        if(type != int.class) return null;
+                        descriptor.append('I');
+                    }
+                    descriptor.append(")V");
+                    if(meaning.getReturnType() != void.class) return null;
+
+                    int start = code.position();
+                    code.op(ALOAD_1).op(CHECKCAST).u2(classRef(owner));
+                    for(int i = 0; i < arity; i++) code.sipush(page.args[at*3 + i]);
+                    code.op(INVOKEVIRTUAL).u2(methodRef(owner, meaning.getName(), descriptor.toString()));
+                    code.handler(start, code.position(), handler, classRef("java/lang/RuntimeException"));
+                }
+
+                code.op(ALOAD_1).op(LDC2_W).u2(doubleConst(gene.getCost())).sipush(step).op(ILOAD_2).op(ILOAD_3);
+                code.op(INVOKESTATIC).u2(methodRef(SUPER, "advance", "(" + ROBOT + "DIII)I"));
+                code.op(DUP).op(ISTORE).u1(NEXT);
+                code.sipush(next);
+                code.jump(IF_ICMPNE, leave);
+                code.jump(GOTO, fallthrough);
+            }
+
+            code.mark(leave);
+            code.op(ILOAD).u1(NEXT).op(IRETURN);
+            code.mark(handBack);
+            code.op(ICONST_M1).op(IRETURN);
+            code.mark(handler);
+            code.op(ASTORE).u1(EXCEPTION).op(ALOAD_1).op(ALOAD).u1(EXCEPTION).op(ILOAD).u1(OPCODE).op(ILOAD).u1(STEP);
+            code.op(INVOKESTATIC).u2(methodRef(SUPER, "failed", "(" + ROBOT + "Ljava/lang/RuntimeException;II)V"));
+            code.jump(GOTO, handBack);
+
+            return method("block" + number, BLOCK, 8, 8);
+        }
+
+        //Addresses reached by running straight on from the first few, which is where programs start (0)
+        //and where a subroutine started by _RUN really begins (2). Jumps elsewhere usually fall in line soon.
+        //Cut into blocks of a few instructions each, in order.
+        private List<List<Integer>> blocks() {
+            boolean[] covered = new boolean[page.genes.length];
+            for(int start = 0; start < 4; start++) {
+                for(int at = start; at < covered.length && !covered[at]; at += page.steps[at]) covered[at] = true;
+            }
+
+            List<List<Integer>> result = new ArrayList<>();
+            List<Integer> block = new ArrayList<>();
+            for(int at = 0; at < covered.length; at++) {
+                if(!covered[at]) continue;
+                block.add(at);
+                if(block.size() == BLOCK_SIZE) {
+                    result.add(block);
+                    block = new ArrayList<>();
+                }
+            }
+            if(!block.isEmpty()) result.add(block);
+            return result;
+        }
+
+        private byte[] method(String methodName, String descriptor, int maxStack, int maxLocals) throws IOException {
+            byte[] body = code.toBytes();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(utf8(methodName));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(2 + 2 + 4 + body.length + 2 + 8 * code.handlers.size() + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeShort(code.handlers.size());
+            for(int[] h: code.handlers) {
+                out.writeShort(h[0]);
+                out.writeShort(h[1]);
+                out.writeShort(code.labelPositions.get(h[2]));
+                out.writeShort(h[3]);
+            }
+            out.writeShort(0);
+            return bytes.toByteArray();
+        }
+
+        //Constant pool
+
+        private int utf8(String value) throws IOException {
+            Integer index = constants.get("U" + value);
+            if(index != null) return index;
+            poolOut.writeByte(1);
+            poolOut.writeUTF(value);
+            return add("U" + value, 1);
+        }
+
+        private int classRef(String internalName) throws IOException {
+            Integer index = constants.get("C" + internalName);
+            if(index != null) return index;
+            int nameIndex = utf8(internalName);
+            poolOut.writeByte(7);
+            poolOut.writeShort(nameIndex);
+            return add("C" + internalName, 1);
+        }
+
+        private int methodRef(String owner, String methodName, String descriptor) throws IOException {
+            String key = "M" + owner + "." + methodName + descriptor;
+            Integer index = constants.get(key);
+            if(index != null) return index;
+            int ownerIndex = classRef(owner);
+            int nameAndType = nameAndType(methodName, descriptor);
+            poolOut.writeByte(10);
+            poolOut.writeShort(ownerIndex);
+            poolOut.writeShort(nameAndType);
+            return add(key, 1);
+        }
+
+        private int nameAndType(String methodName, String descriptor) throws IOException {
+            String key = "N" + methodName + descriptor;
+            Integer index = constants.get(key);
+            if(index != null) return index;
+            int nameIndex = utf8(methodName);
+            int typeIndex = utf8(descriptor);
+            poolOut.writeByte(12);
+            poolOut.writeShort(nameIndex);
+            poolOut.writeShort(typeIndex);
+            return add(key, 1);
+        }
+
+        private int doubleConst(double value) throws IOException {
+            String key = "D" + Double.doubleToRawLongBits(value);
+            Integer index = constants.get(key);
+            if(index != null) return index;
+            poolOut.writeByte(6);
+            poolOut.writeDouble(value);
+            return add(key, 2); //Doubles take up two entries
+        }
+
+        private int add(String key, int size) {
+            int index = poolSize;
+            constants.put(key, index);
+            poolSize += size;
+            return index;
+        }
+    }
+
+    //Bytecode with jumps to labels that are filled in once everything's laid out.
+    private static final class Code {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Integer> labelPositions = new ArrayList<>();
+        private final List<int[]> jumps = new ArrayList<>(); //{where the offset goes, where it's from, label, width}
+        private final List<int[]> handlers = new ArrayList<>(); //{start, end, label, exception class}
+
+        int label() {
+            labelPositions.add(-1);
+            return labelPositions.size() - 1;
+        }
+
+        void mark(int label) {
+            labelPositions.set(label, position());
+        }
+
+        int position() {
+            return bytes.size();
+        }
+
+        Code op(int opcode) {
+            bytes.write(opcode);
+            return this;
+        }
+
+        Code u1(int value) {
+            bytes.write(value);
+            return this;
+        }
+
+        Code u2(int value) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+            return this;
+        }
+
+        Code sipush(int value) {
+            return op(ClassFile.SIPUSH).u2(value);
+        }
+
+        void jump(int opcode, int label) {
+            int from = position();
+            op(opcode);
+            jumps.add(new int[] {position(), from, label, 2});
+            u2(0);
+        }
+
+        void tableswitch(int defaultLabel, int[] labels) {
+            tableswitch(defaultLabel, labels, 0);
+        }
+
+        void tableswitch(int defaultLabel, int[] labels, int low) {
+            int high = low + labels.length - 1;
+            int from = position();
+            op(ClassFile.TABLESWITCH);
+            while(position() % 4 != 0) u1(0);
+            jumps.add(new int[] {position(), from, defaultLabel, 4});
+            u2(0).u2(0);
+            u2(low >> 16).u2(low);
+            u2(high >> 16).u2(high);
+            for(int label: labels) {
+                jumps.add(new int[] {position(), from, label, 4});
+                u2(0).u2(0);
+            }
+        }
+
+        void handler(int start, int end, int label, int exceptionClass) {
+            handlers.add(new int[] {start, end, label, exceptionClass});
+        }
+
+        byte[] toBytes() {
+            byte[] result = bytes.toByteArray();
+            for(int[] jump: jumps) {
+                int offset = labelPositions.get(jump[2]) - jump[1];
+                if(jump[3] == 4) {
+                    result[jump[0]] = (byte) (offset >> 24);
+                    result[jump[0] + 1] = (byte) (offset >> 16);
+                    result[jump[0] + 2] = (byte) (offset >> 8);
+                    result[jump[0] + 3] = (byte) offset;
+                } else {
+                    result[jump[0]] = (byte) (offset >> 8);
+                    result[jump[0] + 1] = (byte) offset;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.miolean.arena.entities;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One copy of every genome page that's in use anywhere, looked up by a hash of its contents. Most of a
+ * population comes from the same few founders, so the same pages turn up in robot after robot, long after
+ * copy-on-write (see GeneticRobot.store()) has given each family line copies of its own. Every so often
+ * an Arena hands its robots' pages in here (see GeneticRobot.internPages()), and anything that's already
+ * in the table is swapped for the copy that's there.
+ *
+ * A page in the table is never written to. The table counts itself as one of the page's holders, so
+ * store() always sees someone else on it and copies it first. That also means two robots' pages are
+ * the same exactly when they're the same array, as long as both have been through here.
+ *
+ * A page that's run often enough is compiled (see PageCompiler), and that's kept here too, once for
+ * everyone running the page.
+ *
+ * The table only keeps weak references to its pages, so a page goes once the last robot holding it does,
+ * compiled code and all. It's shared by every Arena (and Islands runs those on threads of their own), hence
+ * the locking.
+ */
+final class PageTable {
+
+    //How many ticks an Arena waits between handing its pages in.
+    static final int INTERVAL = 100;
+
+    private static final Map<Long, Entry> pages = new HashMap<>();
+    private static final ReferenceQueue<byte[]> collected = new ReferenceQueue<>();
+
+    private PageTable() {}
+
+    //The holder count of a page in the table, which doubles as its entry.
+    static final class Entry extends AtomicInteger {
+        private static final long serialVersionUID = 1L;
+
+        private final Page page;
+
+        //What the page compiles to, for whoever runs it often enough (see GeneticRobot.runGenes()). Made at most once.
+        private CompiledPage compiled;
+        private boolean compileTried = false;
+
+        private Entry(Page page, int holders) {
+            super(holders);
+            this.page = page;
+        }
+
+        byte[] page() { return page.get(); }
+
+        //[decoded] has to be this entry's page, decoded.
+        synchronized CompiledPage compiled(DecodedPage decoded) {
+            if(!compileTried) {
+                compileTried = true;
+                compiled = PageCompiler.compile(decoded);
+            }
+            return compiled;
+        }
+    }
+
+    private static final class Page extends WeakReference<byte[]> {
+        private final long hash;
+
+        private Page(byte[] page, long hash) {
+            super(page, collected);
+            this.hash = hash;
+        }
+    }
+
+    //What intern() hands back: the table's copy of the page and its entry. The table itself only holds the page
+    //weakly, so this is what keeps it alive until the caller has it stored away.
+    static final class Interned {
+        final byte[] page;
+        final Entry holders;
+
+        private Interned(byte[] page, Entry holders) {
+            this.page = page;
+            this.holders = holders;
+        }
+    }
+
+    //The table's copy of a page with the same contents, with one more holder, or null if that can't be had (for the
+    //rare page whose hash is already taken by different contents). [holders] is the page's count as it is now;
+    //whoever calls this is expected to let go of it, and take the interned page and count instead.
+    static synchronized Interned intern(byte[] page, AtomicInteger holders) {
+        purge();
+        long hash = hash(page);
+
+        Entry entry = pages.get(hash);
+        byte[] existing = (entry == null)? null: entry.page();
+        if(existing != null) {
+            if(!Arrays.equals(existing, page)) return null;
+            entry.incrementAndGet();
+            return new Interned(existing, entry);
+        }
+
+        //New contents. If anyone else still holds this array they can go on writing to it, so the table needs its own.
+        byte[] kept = (holders != null && holders.get() == 1)? page : page.clone();
+        entry = new Entry(new Page(kept, hash), 2); //The table and the caller
+        pages.put(hash, entry);
+        return new Interned(kept, entry);
+    }
+
+    static boolean isInterned(AtomicInteger holders) {
+        return holders instanceof Entry;
+    }
+
+
+    //Forget pages nobody holds any more.
+    private static void purge() {
+        Page gone;
+        while((gone = (Page) collected.poll()) != null) {
+            Entry entry = pages.get(gone.hash);
+            if(entry != null && entry.page == gone) pages.remove(gone.hash);
+        }
+    }
+
+    private static long hash(byte[] page) {
+        long hash = Arena.mix(page.length);
+        long word = 0;
+        for(int i = 0; i < page.length; i++) {
+            word = (word << 8) | (page[i] & 0xFF);
+            if((i & 7) == 7) {
+                hash = Arena.mix(hash ^ word);
+                word = 0;
+            }
+        }
+        return Arena.mix(hash ^ word);
+    }
+}
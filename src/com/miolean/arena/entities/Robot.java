@@ -64,6 +64,12 @@ public abstract class Robot extends Entity {
     private long lastFireTime = getArena().getTime();
     private long lastHealTime = getArena().getTime();
 
+    private double seenCogs;
+    private int seenHue;
+
+    //Intents: things the Robot decided to do that affect the rest of the arena, carried out in applyIntents().
+    private boolean firing = false;
+
     //Create a totally blank Robot (for whatever reason)
     Robot(Arena arena) {
         super(Option.robotSize.getValue(), Option.robotSize.getValue(), 10, arena);
@@ -164,6 +170,10 @@ public abstract class Robot extends Entity {
         return result;
     }
 
+    //Anything else that runs into a Robot hits its round body.
+    @Override
+    double getCollisionRadius() { return getWidth() / 2.0; }
+
     @Override
     public void intersect(Entity e) {
         repel(e);
@@ -175,10 +185,39 @@ public abstract class Robot extends Entity {
         return name + getUUID();
     }
 
+    @Override
+    void publish() {
+        super.publish();
+        seenCogs = cogs;
+        seenHue = hue;
+    }
+
+    @Override
+    long stateHash() {
+        long hash = Arena.mix(super.stateHash() ^ Double.doubleToLongBits(cogs));
+        for(UByte stat: stats) hash = Arena.mix(hash ^ stat.val());
+        return hash;
+    }
+
+    @Override
+    void tick() {
+        super.tick();
+        if(isAlive()) applyIntents();
+    }
+
+    //Carry out whatever the Robot decided to do to the outside world this tick.
+    //Always runs on the arena's own thread, so it's safe to add things here.
+    void applyIntents() {
+        if(firing) {
+            Bullet bullet = getArena().makeBullet(this);
+            add(bullet);
+            firing = false;
+        }
+    }
+
     protected void fire() {
         if(lastFireTime + MAX_BULLET_RECHARGE - stats[STAT_FIRE_SPEED].val() < getArena().getTime()) {
-            Bullet bullet = new Bullet(this, getArena());
-            add(bullet);
+            firing = true;
             lastFireTime = getArena().getTime();
         }
     }
@@ -206,12 +245,11 @@ public abstract class Robot extends Entity {
 
         setAccR( ((double) force )/512 );
     }
-    protected void upgrade(UByte stat, int amount) {
-        //TODO manage conversion problems with signed UBytes
+    protected void upgrade(int stat, int amount) {
         //TODO probably needs a cooldown
         cogs -= amount;
-        int newValue = amount + stats[Math.abs(stat.val()>>5)].val();
-        stats[Math.abs(stat.val()>>5)] = (amount > 255)? ub(255):ub(amount);
+        int newValue = amount + stats[Math.abs(stat>>5)].val();
+        stats[Math.abs(stat>>5)] = (amount > 255)? ub(255):ub(amount);
     }
 
     public void onDeath() {
@@ -220,13 +258,13 @@ public abstract class Robot extends Entity {
         int value;
         int maxValue = (int)(cogs/4)+1;
         while(cogs > 1) {
-            value = (int) Math.min(Option.random.nextInt(maxValue-1)+1, cogs);
-            cog = new Cog(value, getArena());
+            value = (int) Math.min(getRandom().nextInt(maxValue-1)+1, cogs);
+            cog = getArena().makeCog(value);
             cogs -= value;
             cog.setX(getX());
             cog.setY(getY());
-            cog.setVelX(10*(Option.random.nextFloat()-0.5));
-            cog.setVelY(10*(Option.random.nextFloat()-0.5));
+            cog.setVelX(10*(getRandom().nextDouble()-0.5));
+            cog.setVelY(10*(getRandom().nextDouble()-0.5));
             add(cog);
         }
     }
@@ -235,7 +273,7 @@ public abstract class Robot extends Entity {
     public String toHTML() {
         String result = "";
 
-        result += "<a href=ergo_uuid_"+getUUID() + ">";
+        result += "<a href=ergo_uuid_"+getArena().handleOf(this) + ">";
         if(!isAlive()) result += "<font color=\"red\">";
         else result += "<font color=\"blue\">";
         result += getName();
@@ -244,6 +282,8 @@ public abstract class Robot extends Entity {
     }
 
     public double getCogs() { return cogs; }
+    public double getSeenCogs() { return seenCogs; }
+    public int getSeenHue() { return seenHue; }
     public void setCogs(double cogs) { this.cogs = cogs; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
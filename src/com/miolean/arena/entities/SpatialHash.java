@@ -0,0 +1,259 @@
+package com.miolean.arena.entities;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.miolean.arena.entities.Arena.ARENA_SIZE;
+
+/**
+ * Uniform grid over the arena, used to find which Entities are close enough to possibly touch.
+ * Every Entity is bucketed into each cell its bounding box covers, so two Entities can only
+ * intersect if they share a cell. Buckets are rebuilt from scratch with a counting sort every
+ * tick, which keeps the whole thing in a handful of flat int arrays (no per-tick allocation
+ * unless the population grows).
+ */
+public class SpatialHash implements BroadPhase {
+
+    public static final int DEFAULT_CELL_SIZE = 128;
+
+    private final int cellSize;
+    private final int columns;
+
+    private Entity[] entities = new Entity[64];
+    private int[] minCell = new int[64]; //Packed (column, row) of the lowest cell each Entity covers
+    private int[] maxCell = new int[64]; //...and the highest.
+    private int count = 0;
+
+    private final int[] cellStart; //Index of each cell's first entry in cellEntries (counting sort)
+    private int[] cellEntries = new int[256];
+
+    public SpatialHash() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public SpatialHash(int cellSize) {
+        this.cellSize = cellSize;
+        this.columns = (ARENA_SIZE + cellSize - 1) / cellSize;
+        this.cellStart = new int[columns * columns + 1];
+    }
+
+    //Rebucket every Entity according to its current position.
+    @Override
+    public void rebuild(Iterable<Entity> all) {
+        int oldCount = count;
+        count = 0;
+        for(Entity e: all) {
+            if(count == entities.length) grow();
+            minCell[count] = pack(cellOf(e.getMinX()), cellOf(e.getMinY()));
+            maxCell[count] = pack(cellOf(e.getMaxX()), cellOf(e.getMaxY()));
+            entities[count] = e;
+            count++;
+        }
+        if(oldCount > count) Arrays.fill(entities, count, oldCount, null); //Don't hold on to the departed
+
+        //First pass: count how many entries land in every cell.
+        Arrays.fill(cellStart, 0);
+        int total = 0;
+        for(int i = 0; i < count; i++) {
+            for(int row = row(minCell[i]); row <= row(maxCell[i]); row++) {
+                for(int col = column(minCell[i]); col <= column(maxCell[i]); col++) {
+                    cellStart[row * columns + col + 1]++;
+                    total++;
+                }
+            }
+        }
+        if(cellEntries.length < total) cellEntries = new int[Math.max(total, cellEntries.length * 2)];
+
+        //Prefix sums turn the counts into start offsets...
+        for(int c = 1; c < cellStart.length; c++) cellStart[c] += cellStart[c-1];
+
+        //...which the second pass uses (and shifts) as write cursors.
+        for(int i = 0; i < count; i++) {
+            for(int row = row(minCell[i]); row <= row(maxCell[i]); row++) {
+                for(int col = column(minCell[i]); col <= column(maxCell[i]); col++) {
+                    cellEntries[cellStart[row * columns + col]++] = i;
+                }
+            }
+        }
+        //Every start has been shifted forward to the next cell's start; shift them back.
+        for(int c = cellStart.length - 1; c > 0; c--) cellStart[c] = cellStart[c-1];
+        cellStart[0] = 0;
+    }
+
+    //Call the visitor for every pair of Entities that share at least one cell. Each pair is visited once.
+    @Override
+    public void forEachPair(PairVisitor visitor) {
+        for(int cell = 0; cell < cellStart.length - 1; cell++) {
+            int start = cellStart[cell];
+            int end = cellStart[cell + 1];
+            int col = cell % columns;
+            int row = cell / columns;
+
+            for(int i = start; i < end; i++) {
+                int a = cellEntries[i];
+                for(int j = i + 1; j < end; j++) {
+                    int b = cellEntries[j];
+                    //A pair spanning several cells is only reported from the first cell they share.
+                    if(col != Math.max(column(minCell[a]), column(minCell[b]))) continue;
+                    if(row != Math.max(row(minCell[a]), row(minCell[b]))) continue;
+                    visitor.visit(entities[a], entities[b]);
+                }
+            }
+        }
+    }
+
+    //Queries, for things that want to know what's around a point rather than what's touching what. They only
+    //read the grid, so any number of threads can ask at once as long as nobody is rebuilding it.
+
+    //Every Entity of a type (Entity.class for any) whose center is within radius of (x, y), apart from one to leave out.
+    public void within(double x, double y, double radius, Class<? extends Entity> type, Entity exclude, List<Entity> into) {
+        int minColumn = cellOf(x - radius), maxColumn = cellOf(x + radius);
+        int minRow = cellOf(y - radius), maxRow = cellOf(y + radius);
+        double radius2 = radius * radius;
+
+        for(int row = minRow; row <= maxRow; row++) {
+            for(int col = minColumn; col <= maxColumn; col++) {
+                int cell = row * columns + col;
+                for(int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int a = cellEntries[i];
+                    //An Entity spanning several cells is only looked at in the first one the query covers.
+                    if(col != Math.max(column(minCell[a]), minColumn)) continue;
+                    if(row != Math.max(row(minCell[a]), minRow)) continue;
+
+                    Entity e = entities[a];
+                    if(e == exclude || !type.isInstance(e)) continue;
+                    double dx = e.getX() - x;
+                    double dy = e.getY() - y;
+                    if(dx*dx + dy*dy <= radius2) into.add(e);
+                }
+            }
+        }
+    }
+
+    //The k closest Entities of a type within radius of (x, y), closest first (ties go to the lower UUID).
+    //The search starts a cell wide and only widens while it hasn't found k, so close neighbors are cheap to find.
+    public void nearest(double x, double y, double radius, int k, Class<? extends Entity> type, Entity exclude, List<Entity> into) {
+        into.clear();
+        if(k <= 0 || radius < 0) return;
+
+        double reach = Math.min(radius, cellSize);
+        while(true) {
+            within(x, y, reach, type, exclude, into);
+            if(into.size() >= k || reach >= radius) break;
+            into.clear();
+            reach = Math.min(radius, reach * 2);
+        }
+
+        into.sort((a, b) -> {
+            int byDistance = Double.compare(distance2(a, x, y), distance2(b, x, y));
+            return (byDistance != 0)? byDistance: Integer.compare(a.getUUID(), b.getUUID());
+        });
+        while(into.size() > k) into.remove(into.size() - 1);
+    }
+
+    //Every Entity of a type within range of (x, y) whose center is no more than halfAngle off the direction (dx, dy).
+    public void inCone(double x, double y, double dx, double dy, double halfAngle, double range, Class<? extends Entity> type, Entity exclude, List<Entity> into) {
+        double length = Math.sqrt(dx*dx + dy*dy);
+        if(length == 0) return;
+        dx /= length;
+        dy /= length;
+        double cos = Math.cos(Math.min(halfAngle, Math.PI));
+
+        int start = into.size();
+        within(x, y, range, type, exclude, into);
+        int kept = start;
+        for(int i = start; i < into.size(); i++) {
+            Entity e = into.get(i);
+            double ex = e.getX() - x;
+            double ey = e.getY() - y;
+            double distance = Math.sqrt(ex*ex + ey*ey);
+            //Anything right on top of the point is in every direction at once.
+            if(distance == 0 || (ex*dx + ey*dy) >= cos * distance) into.set(kept++, e);
+        }
+        while(into.size() > kept) into.remove(into.size() - 1);
+    }
+
+    //The first Entity of a type that a ray from (x, y) in the direction (dx, dy) runs into within range, or null.
+    //The ray walks the grid one cell at a time (a DDA), so it only ever looks at the cells it passes through,
+    //and it stops as soon as the cells left are farther away than something it's already hit.
+    public Entity rayCast(double x, double y, double dx, double dy, double range, Class<? extends Entity> type, Entity exclude) {
+        double length = Math.sqrt(dx*dx + dy*dy);
+        if(length == 0 || range <= 0) return null;
+        dx /= length;
+        dy /= length;
+
+        int col = cellOf(x);
+        int row = cellOf(y);
+        int stepColumn = (dx > 0)? 1: (dx < 0)? -1: 0;
+        int stepRow = (dy > 0)? 1: (dy < 0)? -1: 0;
+
+        //How far along the ray the next column and row boundaries are, and how far apart they are after that.
+        double nextColumn = (dx > 0)? ((col + 1) * cellSize - x) / dx: (dx < 0)? (col * cellSize - x) / dx: Double.POSITIVE_INFINITY;
+        double nextRow = (dy > 0)? ((row + 1) * cellSize - y) / dy: (dy < 0)? (row * cellSize - y) / dy: Double.POSITIVE_INFINITY;
+        double columnStep = (dx != 0)? cellSize / Math.abs(dx): Double.POSITIVE_INFINITY;
+        double rowStep = (dy != 0)? cellSize / Math.abs(dy): Double.POSITIVE_INFINITY;
+
+        Entity hit = null;
+        double hitDistance = range;
+        double entered = 0;
+
+        while(entered <= hitDistance) {
+            int cell = row * columns + col;
+            for(int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                Entity e = entities[cellEntries[i]];
+                if(e == exclude || !type.isInstance(e)) continue;
+
+                double distance = hitDistance * firstContact(e, x, y, dx * hitDistance, dy * hitDistance);
+                if(distance < hitDistance || (distance == hitDistance && hit == null)) {
+                    hit = e;
+                    hitDistance = distance;
+                }
+            }
+
+            if(nextColumn < nextRow) {
+                entered = nextColumn;
+                nextColumn += columnStep;
+                col += stepColumn;
+            } else {
+                entered = nextRow;
+                nextRow += rowStep;
+                row += stepRow;
+            }
+            if(col < 0 || col >= columns || row < 0 || row >= columns) break;
+        }
+        return hit;
+    }
+
+    //How far along the segment from (x, y) by (dx, dy) it first touches e, from 0 to 1 (NarrowPhase.NO_IMPACT if never).
+    private static double firstContact(Entity e, double x, double y, double dx, double dy) {
+        Entity.Bounds bounds = e.bounds();
+        if(bounds.radius > 0) return NarrowPhase.sweepCircle(x, y, dx, dy, 0, bounds.x, bounds.y, bounds.radius);
+        return NarrowPhase.sweepPolygon(x, y, dx, dy, 0, bounds.xpoints, bounds.ypoints, bounds.npoints);
+    }
+
+    private static double distance2(Entity e, double x, double y) {
+        double dx = e.getX() - x;
+        double dy = e.getY() - y;
+        return dx*dx + dy*dy;
+    }
+
+    public int getCellSize() { return cellSize; }
+    public int size() { return count; }
+
+    private int cellOf(double coordinate) {
+        int cell = (int) (coordinate / cellSize);
+        if(cell < 0) return 0;
+        if(cell >= columns) return columns - 1;
+        return cell;
+    }
+
+    private void grow() {
+        entities = Arrays.copyOf(entities, entities.length * 2);
+        minCell = Arrays.copyOf(minCell, minCell.length * 2);
+        maxCell = Arrays.copyOf(maxCell, maxCell.length * 2);
+    }
+
+    private static int pack(int column, int row) { return (row << 16) | column; }
+    private static int column(int packed) { return packed & 0xFFFF; }
+    private static int row(int packed) { return packed >>> 16; }
+}
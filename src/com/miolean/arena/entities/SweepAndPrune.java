@@ -0,0 +1,106 @@
+package com.miolean.arena.entities;
+
+import java.util.Arrays;
+
+/**
+ * Sort-and-sweep along the X axis. Entities are kept sorted by the left edge of their bounding box,
+ * and two Entities can only touch if their X intervals overlap, which the sweep finds by walking
+ * forward from each Entity until the left edges pass its right edge.
+ *
+ * The order is kept from one tick to the next. Most things in the arena barely move between ticks,
+ * so the list is nearly sorted already and an insertion sort fixes it up in close to linear time,
+ * which is cheaper than bucketing everything from scratch.
+ */
+public class SweepAndPrune implements BroadPhase {
+
+    private Entity[] order = new Entity[64];
+    private double[] minX = new double[64];
+    private double[] maxX = new double[64];
+    private double[] minY = new double[64];
+    private double[] maxY = new double[64];
+    private int count = 0;
+
+    private Entity[] arrivals = new Entity[16];
+    private int stamp = 0;
+
+    @Override
+    public void rebuild(Iterable<Entity> all) {
+
+        //Stamp everything that's currently in the arena, and note anything we haven't seen before.
+        //(An empty list means we're brand new, and any stamps out there belong to someone else.)
+        boolean fresh = count == 0;
+        int previous = stamp;
+        stamp++;
+        int arrived = 0;
+        for(Entity e: all) {
+            if(fresh || e.broadphaseStamp != previous) {
+                if(arrived == arrivals.length) arrivals = Arrays.copyOf(arrivals, arrived * 2);
+                arrivals[arrived++] = e;
+            }
+            e.broadphaseStamp = stamp;
+        }
+
+        //Keep the survivors in last tick's order (that's the whole point), then tack on the newcomers.
+        int kept = 0;
+        for(int i = 0; i < count; i++) {
+            if(order[i].broadphaseStamp == stamp) order[kept++] = order[i];
+        }
+        if(kept + arrived > order.length) grow(kept + arrived);
+        for(int i = 0; i < arrived; i++) {
+            order[kept++] = arrivals[i];
+            arrivals[i] = null;
+        }
+        if(kept < count) Arrays.fill(order, kept, count, null);
+        count = kept;
+
+        for(int i = 0; i < count; i++) {
+            Entity e = order[i];
+            minX[i] = e.getMinX();
+            maxX[i] = e.getMaxX();
+            minY[i] = e.getMinY();
+            maxY[i] = e.getMaxY();
+        }
+
+        //Insertion sort on the left edges. Nearly sorted input, so this is close to one pass.
+        for(int i = 1; i < count; i++) {
+            Entity e = order[i];
+            double eMinX = minX[i], eMaxX = maxX[i], eMinY = minY[i], eMaxY = maxY[i];
+            int j = i - 1;
+            while(j >= 0 && minX[j] > eMinX) {
+                order[j+1] = order[j];
+                minX[j+1] = minX[j];
+                maxX[j+1] = maxX[j];
+                minY[j+1] = minY[j];
+                maxY[j+1] = maxY[j];
+                j--;
+            }
+            order[j+1] = e;
+            minX[j+1] = eMinX;
+            maxX[j+1] = eMaxX;
+            minY[j+1] = eMinY;
+            maxY[j+1] = eMaxY;
+        }
+    }
+
+    @Override
+    public void forEachPair(PairVisitor visitor) {
+        for(int i = 0; i < count; i++) {
+            double right = maxX[i];
+            for(int j = i + 1; j < count && minX[j] <= right; j++) {
+                if(minY[j] > maxY[i] || maxY[j] < minY[i]) continue;
+                visitor.visit(order[i], order[j]);
+            }
+        }
+    }
+
+    public int size() { return count; }
+
+    private void grow(int needed) {
+        int length = Math.max(needed, order.length * 2);
+        order = Arrays.copyOf(order, length);
+        minX = Arrays.copyOf(minX, length);
+        maxX = Arrays.copyOf(maxX, length);
+        minY = Arrays.copyOf(minY, length);
+        maxY = Arrays.copyOf(maxY, length);
+    }
+}
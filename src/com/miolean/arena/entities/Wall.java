@@ -13,7 +13,6 @@ public class Wall extends Entity {
 
     @Override
     protected void update() {
-        applyPhysics();
     }
 
     @Override
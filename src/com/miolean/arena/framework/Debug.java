@@ -1,22 +1,32 @@
 package com.miolean.arena.framework;
 
 import java.awt.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Debug {
 
     private static long lastRefresh;
-    private static long cycleTime = 1;
+    private static volatile long cycleTime = 1;
 
-    private static Map<String, Long> log = new HashMap<>();
-    private static Map<String, Long> oldLog;
+    //Logged to from the simulation thread(s) and read from the event thread, so these have to be concurrent.
+    private static volatile Map<String, Long> log = new ConcurrentHashMap<>();
+    private static volatile Map<String, Long> oldLog;
+
+    //Things that are counted rather than timed (pool hits, say), per cycle like the times.
+    private static volatile Map<String, Long> counts = new ConcurrentHashMap<>();
+    private static volatile Map<String, Long> oldCounts;
 
     public static void logTime(String category, long value) {
         if(category == null) return;
-        if(log.get(category) != null) log.put(category, log.get(category) + value);
-        else log.put(category, value);
+        log.merge(category, value, Long::sum);
+    }
+
+    public static void logCount(String category, long value) {
+        if(category == null) return;
+        counts.merge(category, value, Long::sum);
     }
 
     public static String getDebugLog() {
@@ -78,12 +88,23 @@ public class Debug {
         g.drawString("100%", 20, 53 + 45 * i);
         g.drawString(cycleTime/1000 + "µs", 20, 66 + 45 * i);
 
+        if(oldCounts == null) return;
+        for(Map.Entry<String, Long> entry: new TreeMap<>(oldCounts).entrySet()) {
+            i++;
+            g.drawString(entry.getKey(), 20, 40 + 45 * i);
+            g.drawString(entry.getValue() + " this cycle", 20, 53 + 45 * i);
+        }
     }
 
     public static void refresh() {
+        Map<String, Long> fresh = new ConcurrentHashMap<>();
+        for(String s: log.keySet()) fresh.put(s, 0L);
         oldLog = log;
-        log = new HashMap<>();
-        for(String s: oldLog.keySet()) log.put(s, 0L);
+        log = fresh;
+        Map<String, Long> freshCounts = new ConcurrentHashMap<>();
+        for(String s: counts.keySet()) freshCounts.put(s, 0L);
+        oldCounts = counts;
+        counts = freshCounts;
         cycleTime = (System.nanoTime() - lastRefresh);
         lastRefresh = System.nanoTime();
     }
@@ -0,0 +1,135 @@
+package com.miolean.arena.framework;
+
+import com.miolean.arena.entities.Arena;
+import com.miolean.arena.entities.DefaultGeneticRobot;
+import com.miolean.arena.entities.GeneticRobot;
+import com.miolean.arena.entities.Robot;
+import com.miolean.arena.genetics.GeneProfiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Runs an Arena with no window at all, as fast as it will go, and prints how it's doing every so often.
+ * Meant for leaving evolution running on a server: nothing here touches Swing, so it's happy with
+ * -Djava.awt.headless=true.
+ *
+ * Usage: Headless [config file]. Without a file, cfg/headless.properties from the classpath is used.
+ * See that file for the settings it understands.
+ */
+public class Headless implements Runnable {
+
+    private static final String DEFAULT_CONFIG = "cfg/headless.properties";
+
+    private final Arena arena;
+    private final long ticks;
+    private final int reportInterval;
+    private final String profile;
+
+    public static void main(String[] args) throws IOException {
+        Properties config = new Properties();
+        try(InputStream in = args.length > 0? new FileInputStream(args[0]): Headless.class.getClassLoader().getResourceAsStream(DEFAULT_CONFIG)) {
+            if(in == null) throw new IOException("Couldn't find " + DEFAULT_CONFIG + " on the classpath");
+            config.load(in);
+        }
+
+        new Headless(config).run();
+    }
+
+    public Headless(Properties config) throws IOException {
+
+        String seed = config.getProperty("seed", "").trim();
+        arena = seed.isEmpty()? new Arena(): new Arena(Long.parseLong(seed));
+
+        ticks = Long.parseLong(config.getProperty("ticks", "0").trim());
+        reportInterval = Math.max(1, Integer.parseInt(config.getProperty("report", "1000").trim()));
+
+        String threads = config.getProperty("threads", "").trim();
+        if(! threads.isEmpty()) Option.tickThreads.setValue(Integer.parseInt(threads));
+        Option.sweepAndPrune.setValue(Boolean.parseBoolean(config.getProperty("sweepAndPrune", "false").trim()));
+        profile = config.getProperty("profile", "").trim();
+        Option.profileGenes.setValue(!profile.isEmpty());
+
+        populate(arena, config.getProperty("robots", ""));
+    }
+
+    public void run() {
+        System.out.println("Running headless: seed " + arena.getSeed() + ", " + (ticks > 0? ticks + " ticks": "no tick limit") + ", " + Option.tickThreads.getValue() + " thread(s)");
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        long tick = 0;
+
+        try {
+            while(ticks <= 0 || tick < ticks) {
+                arena.updateAll();
+                tick++;
+
+                if(tick % reportInterval == 0) {
+                    long now = System.nanoTime();
+                    report(tick, reportInterval * 1e9 / (now - lastReport));
+                    writeProfile(profile);
+                    lastReport = now;
+                }
+            }
+        } finally {
+            arena.close();
+        }
+        writeProfile(profile);
+
+        System.out.println(String.format("Done after %d ticks, %.1f ticks/s overall. State hash %016x",
+                tick, tick * 1e9 / (System.nanoTime() - start), arena.stateHash()));
+    }
+
+    private void report(long tick, double ticksPerSecond) {
+        GeneticRobot best = arena.getLeaderboard().getBest();
+        double topFitness = (best == null)? 0: best.getFitness();
+
+        System.out.println(String.format("tick %d  robots %d  entities %d  top fitness %.2f  pages %d/%d distinct  %.1f ticks/s",
+                tick, arena.getRobots().size(), arena.getEntities().size(), topFitness,
+                arena.getDistinctPages(), arena.getPageReferences(), ticksPerSecond));
+    }
+
+    //Write out what the gene profiler has counted so far, if there's anywhere to write it.
+    static void writeProfile(String path) {
+        if(path.isEmpty()) return;
+        GeneProfiler.aggregate();
+        try(Writer out = new FileWriter(path)) {
+            GeneProfiler.writeCsv(out, GeneticRobot.KMEM);
+        } catch (IOException e) {
+            System.err.println("Couldn't write the gene profile to " + path + ": " + e.getMessage());
+        }
+    }
+
+    //Starting robots, from a comma-separated list of robot files. Where they land depends only on the seed,
+    //so a seeded run is still repeatable.
+    static void populate(Arena arena, String robots) throws IOException {
+        SplittableRandom placement = new SplittableRandom(arena.getSeed());
+        for(String path: robots.split(",")) {
+            path = path.trim();
+            if(path.isEmpty()) continue;
+            try(InputStream in = open(path)) {
+                Robot robot = new DefaultGeneticRobot(in, arena);
+                robot.setX(Arena.BORDER + (Arena.ARENA_SIZE - 2 * Arena.BORDER) * placement.nextDouble());
+                robot.setY(Arena.BORDER + (Arena.ARENA_SIZE - 2 * Arena.BORDER) * placement.nextDouble());
+                arena.add(robot);
+            }
+        }
+    }
+
+    //A robot file is looked for on disk first, then on the classpath (so "gen/cain.ergo" works out of the box).
+    private static InputStream open(String path) throws IOException {
+        File file = new File(path);
+        if(file.isFile()) return new FileInputStream(file);
+
+        InputStream in = Headless.class.getClassLoader().getResourceAsStream(path);
+        if(in == null) throw new IOException("Couldn't find robot file " + path);
+        return in;
+    }
+}
@@ -0,0 +1,197 @@
+package com.miolean.arena.framework;
+
+import com.miolean.arena.entities.Arena;
+import com.miolean.arena.entities.GeneticRobot;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Island-model evolution: several Arenas, each evolving on its own thread, that every so often swap
+ * some of their best Robots. No Arena is ever touched by two threads at once (they all wait at a
+ * barrier while migrants move), so nothing inside an Arena has to be thread-safe, and the whole
+ * thing still plays out the same way every time for the same seed.
+ *
+ * Usage: Islands [config file]. Without a file, cfg/islands.properties from the classpath is used.
+ * See that file for the settings it understands.
+ */
+public class Islands implements Runnable {
+
+    private static final String DEFAULT_CONFIG = "cfg/islands.properties";
+
+    //Which islands each island sends its migrants to.
+    public enum Topology {
+        RING, //The next one over
+        RANDOM, //One other island, picked fresh each time
+        FULL //All the others
+    }
+
+    private final Arena[] islands;
+    private final long ticks;
+    private final int reportInterval;
+    private final int migrationInterval;
+    private final int migrants;
+    private final Topology topology;
+    private final String profile;
+    private final SplittableRandom migrationRandom;
+
+    private final CyclicBarrier barrier;
+    private volatile long tick = 0; //Only changed by the barrier action, while every island is waiting
+    private long lastReportTick = 0;
+    private long lastReport;
+
+    public static void main(String[] args) throws IOException {
+        Properties config = new Properties();
+        try(InputStream in = args.length > 0? new FileInputStream(args[0]): Islands.class.getClassLoader().getResourceAsStream(DEFAULT_CONFIG)) {
+            if(in == null) throw new IOException("Couldn't find " + DEFAULT_CONFIG + " on the classpath");
+            config.load(in);
+        }
+
+        new Islands(config).run();
+    }
+
+    public Islands(Properties config) throws IOException {
+
+        String seed = config.getProperty("seed", "").trim();
+        SplittableRandom seeds = new SplittableRandom(seed.isEmpty()? System.nanoTime(): Long.parseLong(seed));
+
+        ticks = Long.parseLong(config.getProperty("ticks", "0").trim());
+        reportInterval = Math.max(1, Integer.parseInt(config.getProperty("report", "1000").trim()));
+        migrationInterval = Math.max(1, Integer.parseInt(config.getProperty("migrationInterval", "500").trim()));
+        migrants = Math.max(0, Integer.parseInt(config.getProperty("migrants", "2").trim()));
+        topology = Topology.valueOf(config.getProperty("topology", "RING").trim().toUpperCase());
+
+        //Each island gets one thread; splitting the islands' thinking further would only fight over the same cores.
+        Option.tickThreads.setValue(Math.max(1, Integer.parseInt(config.getProperty("threads", "1").trim())));
+        Option.sweepAndPrune.setValue(Boolean.parseBoolean(config.getProperty("sweepAndPrune", "false").trim()));
+        profile = config.getProperty("profile", "").trim();
+        Option.profileGenes.setValue(!profile.isEmpty());
+
+        islands = new Arena[Math.max(1, Integer.parseInt(config.getProperty("islands", "4").trim()))];
+        for(int i = 0; i < islands.length; i++) {
+            islands[i] = new Arena(seeds.nextLong());
+            Headless.populate(islands[i], config.getProperty("robots", ""));
+        }
+        migrationRandom = seeds.split();
+
+        barrier = new CyclicBarrier(islands.length, this::migrate);
+    }
+
+    public void run() {
+        System.out.println("Running " + islands.length + " islands: " + (ticks > 0? ticks + " ticks": "no tick limit")
+                + ", " + migrants + " migrant(s) every " + migrationInterval + " ticks, " + topology.name().toLowerCase() + " topology");
+
+        long start = System.nanoTime();
+        lastReport = start;
+
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < islands.length; i++) {
+            Arena island = islands[i];
+            Thread thread = new Thread(() -> evolve(island), "island-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        for(Thread thread: threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        for(Arena island: islands) island.close();
+
+        Headless.writeProfile(profile);
+
+        StringBuilder hashes = new StringBuilder();
+        for(Arena island: islands) hashes.append(String.format(" %016x", island.stateHash()));
+        System.out.println(String.format("Done after %d ticks, %.1f ticks/s per island overall. State hashes%s",
+                tick, tick * 1e9 / (System.nanoTime() - start), hashes));
+    }
+
+    //One island's thread: run until the next migration, wait for everyone else, repeat.
+    private void evolve(Arena island) {
+        try {
+            while(ticks <= 0 || tick < ticks) {
+                long steps = (ticks <= 0)? migrationInterval: Math.min(migrationInterval, ticks - tick);
+                for(long i = 0; i < steps; i++) island.updateAll();
+                barrier.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (BrokenBarrierException e) {
+            //Another island died; its exception says why.
+        } catch (RuntimeException e) {
+            barrier.reset(); //Don't leave everyone else waiting on us forever
+            throw e;
+        }
+    }
+
+    //Runs once per round on the last island to arrive, while the rest wait.
+    private void migrate() {
+        tick += (ticks <= 0)? migrationInterval: Math.min(migrationInterval, ticks - tick);
+
+        //Pick everyone's emigrants before anyone arrives anywhere, so nobody moves twice in one round.
+        List<List<GeneticRobot>> emigrants = new ArrayList<>();
+        for(Arena island: islands) {
+            List<GeneticRobot> top = island.getTopRobots();
+            emigrants.add(new ArrayList<>(top.subList(Math.max(0, top.size() - migrants), top.size())));
+        }
+
+        if(islands.length > 1) {
+            for(int from = 0; from < islands.length; from++) {
+                for(int to: destinations(from)) {
+                    for(GeneticRobot r: emigrants.get(from)) islands[to].immigrate(r);
+                }
+            }
+        }
+
+        if(tick / reportInterval > lastReportTick / reportInterval) {
+            long now = System.nanoTime();
+            report((tick - lastReportTick) * 1e9 / (now - lastReport));
+            Headless.writeProfile(profile);
+            lastReport = now;
+            lastReportTick = tick;
+        }
+    }
+
+    private int[] destinations(int from) {
+        switch(topology) {
+            case RING:
+                return new int[] {(from + 1) % islands.length};
+            case RANDOM:
+                int to = migrationRandom.nextInt(islands.length - 1);
+                return new int[] {(to >= from)? to + 1: to};
+            case FULL:
+            default:
+                int[] all = new int[islands.length - 1];
+                for(int i = 0, j = 0; i < islands.length; i++) if(i != from) all[j++] = i;
+                return all;
+        }
+    }
+
+    private void report(double ticksPerSecond) {
+        StringBuilder fitness = new StringBuilder();
+        int robots = 0;
+        long pages = 0;
+        long distinct = 0; //Pages that went from one island to another count once for each
+        for(Arena island: islands) {
+            GeneticRobot best = island.getLeaderboard().getBest();
+            fitness.append(String.format(" %.2f", (best == null)? 0: best.getFitness()));
+            robots += island.getRobots().size();
+            pages += island.getPageReferences();
+            distinct += island.getDistinctPages();
+        }
+
+        System.out.println(String.format("tick %d  robots %d  top fitness%s  pages %d/%d distinct  %.1f ticks/s per island",
+                tick, robots, fitness, distinct, pages, ticksPerSecond));
+    }
+}
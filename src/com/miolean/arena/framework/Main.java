@@ -1,6 +1,8 @@
 package com.miolean.arena.framework;
 
 import com.miolean.arena.entities.Arena;
+import com.miolean.arena.entities.GeneticRobot;
+import com.miolean.arena.genetics.GeneProfiler;
 import com.miolean.arena.input.Input;
 import com.miolean.arena.ui.FieldDisplayPanel;
 import com.miolean.arena.ui.GeneralDisplayPanel;
@@ -8,6 +10,10 @@ import com.miolean.arena.ui.GeneralDisplayPanel;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 
 public class Main implements Runnable, WindowListener, ActionListener {
 
@@ -21,13 +27,15 @@ public class Main implements Runnable, WindowListener, ActionListener {
     Arena arena;
     JFrame window;
     private Handler handler;
-    private boolean isRunning = true;
+    private Scheduler scheduler;
+    private Timer renderTimer;
+    private Timer displayTimer;
 
     public static void main(String[] args) {
         Main main = new Main();
 
         Thread ergoThread = new Thread(main, "ergoloop");
-        ergoThread.run();
+        ergoThread.start();
     }
 
     private Main() {
@@ -36,6 +44,7 @@ public class Main implements Runnable, WindowListener, ActionListener {
         generalDisplayPanel = new GeneralDisplayPanel(arena);
         initializeGUI();
         handler = new Handler(arena);
+        scheduler = new Scheduler(handler);
 
         Option.currentArena.setValue(arena);
 
@@ -60,7 +69,17 @@ public class Main implements Runnable, WindowListener, ActionListener {
         quickAddMenuItem(Option.speedOptions, optionMenu, "Run speed...", KeyStroke.getKeyStroke(KeyEvent.VK_R, InputEvent.ALT_MASK));
         quickAddMenuItem(Option.scale, optionMenu, "Scale...", null);
         quickAddMenuItem(Option.showWireframes, optionMenu, "Show wireframes", null);
+        quickAddMenuItem(Option.sweepAndPrune, optionMenu, "Broadphase...", null);
+        quickAddMenuItem(Option.topListLength, optionMenu, "Top list...", null);
         quickAddMenuItem(Option.showDataInRegistries, optionMenu, "Data display...", KeyStroke.getKeyStroke(KeyEvent.VK_CAPS_LOCK, 0));
+        quickAddMenuItem(Option.profileGenes, optionMenu, "Gene profiler...", null);
+
+        JMenuItem exportProfile = new JMenuItem("Export gene profile...");
+        exportProfile.addActionListener(e -> exportProfile());
+        optionMenu.add(exportProfile);
+        JMenuItem resetProfile = new JMenuItem("Reset gene profile");
+        resetProfile.addActionListener(e -> GeneProfiler.reset());
+        optionMenu.add(resetProfile);
 
 
         //Add the main panel:
@@ -109,52 +128,51 @@ public class Main implements Runnable, WindowListener, ActionListener {
         parent.add(item);
     }
 
-    public void run() {
-        System.out.println("Running...");
-
+    //Save what the gene profiler has counted so far as CSV, wherever the user picks.
+    private void exportProfile() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("genes.csv"));
+        if(chooser.showSaveDialog(window) != JFileChooser.APPROVE_OPTION) return;
 
-        long lastUpdate = System.nanoTime();
-        long lastRender = System.nanoTime();
-        long lastDisplay = System.nanoTime();
-
-        int updateCycle = (int) (1000000000.0/Option.updateSpeed.getValue());
-        int renderCycle = (int) (1000000000.0/Option.renderSpeed.getValue());
-        int displayCycle = (int) (1000000000.0/Option.displaySpeed.getValue());
+        try(Writer out = new FileWriter(chooser.getSelectedFile())) {
+            GeneProfiler.writeCsv(out, GeneticRobot.KMEM);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(window, "Couldn't write " + chooser.getSelectedFile() + ": " + e.getMessage(), "Export gene profile", JOptionPane.ERROR_MESSAGE);
+        }
+    }
 
-        while(isRunning) {
+    public void run() {
+        System.out.println("Running...");
 
+        //Rendering and the info display are Swing's business, so they run on the event thread on their own timers.
+        //The simulation gets this thread to itself.
+        renderTimer = new Timer(cycleMillis(Option.renderSpeed.getValue()), e -> {
             long time = System.nanoTime();
+            fieldDisplayPanel.repaint();
+            Debug.logTime("Render", System.nanoTime()-time);
+        });
+        displayTimer = new Timer(cycleMillis(Option.displaySpeed.getValue()), e -> {
+            long time = System.nanoTime();
+            generalDisplayPanel.display();
+            window.setTitle(String.format("Ergo - %.1f/%d ticks/s", scheduler.getTicksPerSecond(), scheduler.getTargetTicksPerSecond()));
+            Debug.logTime("Display", System.nanoTime()-time);
+
+            //Updating the timers is also on the display cycle (it's generally the least urgent cycle)
+            renderTimer.setDelay(cycleMillis(Option.renderSpeed.getValue()));
+            displayTimer.setDelay(cycleMillis(Option.displaySpeed.getValue()));
+        });
+        renderTimer.start();
+        displayTimer.start();
+
+        scheduler.run();
+    }
 
-            if(time > lastUpdate + updateCycle) {
-                handler.tick();
-                lastUpdate = System.nanoTime();
-                Debug.logTime("Update", -(System.nanoTime()-time));
-            }
-            time = System.nanoTime();
-
-            if(time > lastRender + renderCycle) {
-                fieldDisplayPanel.repaint();
-                lastRender = System.nanoTime();
-                Debug.logTime("Render", System.nanoTime()-time);
-            }
-            time = System.nanoTime();
-
-            if(time > lastDisplay + displayCycle) {
-                generalDisplayPanel.display();
-                lastDisplay = System.nanoTime();
-                Debug.logTime("Display", System.nanoTime()-time);
-
-                //Updating the value of the cycles is actually also on the display cycle
-                //(it's generally the least urgent cycle)
-                updateCycle = (int) (1000000000.0/Option.updateSpeed.getValue());
-                renderCycle = (int) (1000000000.0/Option.renderSpeed.getValue());
-                displayCycle = (int) (1000000000.0/Option.displaySpeed.getValue());
-            }
-        }
+    private static int cycleMillis(int perSecond) {
+        return Math.max(1, 1000 / perSecond);
     }
 
     @Override public void windowOpened(WindowEvent e) {}
-    @Override public void windowClosing(WindowEvent e) {isRunning = false; System.exit(0);}
+    @Override public void windowClosing(WindowEvent e) {scheduler.stop(); System.exit(0);}
     @Override public void windowClosed(WindowEvent e) {    }
     @Override public void windowIconified(WindowEvent e) {}
     @Override public void windowDeiconified(WindowEvent e) {}
@@ -1,5 +1,6 @@
 package com.miolean.arena.framework;
 
+import com.miolean.arena.entities.Arena;
 import com.miolean.arena.input.CheckboxInput;
 import com.miolean.arena.input.*;
 import com.miolean.random.WordRandom;
@@ -18,17 +19,22 @@ public class Option {
     public static NumericalInput updateSpeed = new NumericalInput("Update speed", "The number of update actions to run per second", 1, 1000, 20);
     public static NumericalInput displaySpeed = new NumericalInput("Display speed", "The number of info-display actions to run per second", 1, 1000, 50);
     public static NumericalInput renderSpeed = new NumericalInput("Render speed", "The number of render actions to run per second", 1, 1000, 50);
-    public static CompoundInput speedOptions = new CompoundInput("Arena speed options", "Affect the performance of Ergo", updateSpeed, displaySpeed, renderSpeed);
+    public static NumericalInput tickThreads = new NumericalInput("Tick threads", "The number of threads robots think on during each update", 1, 64, Math.min(64, Runtime.getRuntime().availableProcessors()));
+    public static CompoundInput speedOptions = new CompoundInput("Arena speed options", "Affect the performance of Ergo", updateSpeed, displaySpeed, renderSpeed, tickThreads);
 
     public static NumericalInput robotSize = new NumericalInput("Robot size", "The default robot size", 5, 300, 40);
     public static NumericalInput scale = new NumericalInput("Render scale", "The magnification of the arena display", 1, 60, 5);
     public static CheckboxInput showDataInRegistries = new CheckboxInput("Show registry data", "Shows the actual value being passed to commands in memory displays (instead of a registry number) ");
     public static CheckboxInput showWireframes = new CheckboxInput("Show wireframs", "Draws the actual bounds of entities");
+    public static NumericalInput topListLength = new NumericalInput("Top list length", "How many of the fittest robots are kept around to breed from", 1, 5000, Arena.TOP_LIST_LENGTH);
+    public static NumericalInput rogueRetarget = new NumericalInput("Rogue retarget interval", "How many ticks a rogue bullet goes between looking for the nearest robot", 1, 1000, 10);
+    public static CheckboxInput sweepAndPrune = new CheckboxInput("Sweep and prune", "Finds colliding entities by sorting them along X instead of with the spatial hash");
+    public static CheckboxInput profileGenes = new CheckboxInput("Profile genes", "Counts how often each gene runs and what it costs, shown in the debug tab (slows robots down)");
     public static ArenaInput currentArena = new ArenaInput("Arena", "The current playing area for the program");
     public static EntityInput viewholder = new EntityInput("Entities", "Select robots or other things to view", currentArena);
 
 
-    private static Input[] inputs = {updateSpeed, displaySpeed, renderSpeed, robotSize, scale, speedOptions, showDataInRegistries, viewholder};
+    private static Input[] inputs = {updateSpeed, displaySpeed, renderSpeed, tickThreads, robotSize, scale, topListLength, rogueRetarget, speedOptions, showDataInRegistries, sweepAndPrune, profileGenes, viewholder};
 
 
     //Publicly accessible random instances
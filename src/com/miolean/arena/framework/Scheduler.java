@@ -0,0 +1,73 @@
+package com.miolean.arena.framework;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ticks something at a steady rate (Option.updateSpeed ticks per second) on whatever thread runs it.
+ *
+ * Time is handed out in fixed steps: real time piles up in an accumulator and each tick spends one step
+ * of it, so a slow tick is made up for by running the next few back to back. That catching up is capped
+ * per pass, though, so a simulation that just can't keep up slows down instead of falling further and
+ * further behind. When there's nothing to do the thread parks until the next tick is due rather than
+ * spinning.
+ */
+public class Scheduler implements Runnable {
+
+    //Most ticks run back to back before giving up on catching up.
+    private static final int MAX_TICKS_PER_FRAME = 5;
+    private static final long RATE_WINDOW = 1000000000L; //How long the achieved rate is averaged over, in ns
+
+    private final Perpetual task;
+    private volatile boolean running = true;
+    private volatile double ticksPerSecond = 0;
+
+    public Scheduler(Perpetual task) {
+        this.task = task;
+    }
+
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+
+        long windowStart = previous;
+        int windowTicks = 0;
+
+        while(running) {
+            long step = (long) (1000000000.0 / Option.updateSpeed.getValue());
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
+
+            int ticks = 0;
+            while(accumulator >= step && ticks < MAX_TICKS_PER_FRAME) {
+                long time = System.nanoTime();
+                task.tick();
+                Debug.logTime("Update", -(System.nanoTime() - time));
+                accumulator -= step;
+                ticks++;
+            }
+
+            //Still behind after a full frame of ticks: let the backlog go rather than chase it forever.
+            if(accumulator >= step) accumulator = step;
+
+            windowTicks += ticks;
+            if(now - windowStart >= RATE_WINDOW) {
+                ticksPerSecond = windowTicks * 1000000000.0 / (now - windowStart);
+                windowStart = now;
+                windowTicks = 0;
+            }
+
+            if(ticks == 0) LockSupport.parkNanos(step - accumulator);
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    //Ticks actually run per second, averaged over the last second or so.
+    public double getTicksPerSecond() { return ticksPerSecond; }
+
+    //Ticks that would run per second if every one were on time.
+    public int getTargetTicksPerSecond() { return Option.updateSpeed.getValue(); }
+}
@@ -35,20 +35,18 @@ public final class UByte implements Serializable, Comparable<UByte> {
         return new UByte((int) (256 * Option.random.nextFloat()));
     }
 
-    public static UByte[][] ubDeepCopy(UByte[][] array) {
-        if(array == null) throw new IllegalArgumentException("Cannot copy a null array");
-        UByte[][] result = new UByte[array.length][];
-        for(int i = 0; i < result.length; i++) {
+    //Plain bytes hold the same 0-255 range without an object apiece. These read and write them the way
+    //a UByte would: val() undoes Java's sign, clamp() saturates like ub() does instead of wrapping around.
+    public static int val(byte b) {
+        return b & 0xFF;
+    }
 
-            if(array[i] != null) {
-                result[i] = new UByte[array[i].length];
-                for(int j = 0; j < result[i].length; j++) {
-                    result[i][j] = array[i][j];
-                }
-            }
-        }
-        return result;
+    public static byte clamp(int value) {
+        if(value < 0) return 0;
+        if(value > 255) return (byte) 255;
+        return (byte) value;
     }
+
     @Override
     public int hashCode() {
         return value;
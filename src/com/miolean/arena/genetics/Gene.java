@@ -7,7 +7,13 @@ import com.miolean.arena.entities.GeneticRobot;
 import com.miolean.arena.entities.Robot;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Objects;
 import java.util.Scanner;
 
@@ -15,6 +21,18 @@ public class Gene {
 
     private static String version;
     private Method meaning;
+
+    //How the gene is actually run: a direct call, generated once when the gene is loaded (see bind()).
+    //Going through meaning.invoke() boxes every argument and checks access on every single instruction.
+    private Nullary nullary;
+    private Unary unary;
+    private Binary binary;
+    private Ternary ternary;
+
+    public interface Nullary { void run(GeneticRobot robot); }
+    public interface Unary { void run(GeneticRobot robot, int arg0); }
+    public interface Binary { void run(GeneticRobot robot, int arg0, int arg1); }
+    public interface Ternary { void run(GeneticRobot robot, int arg0, int arg1, int arg2); }
     private String description;
     private String category;
     private String arg0Description;
@@ -24,6 +42,7 @@ public class Gene {
     private int numParameters;
     private double cost;
     private boolean defined;
+    private boolean idempotent;
 
 
     private int weight;
@@ -105,7 +124,12 @@ public class Gene {
         GeneCommand geneInfo;
         GeneDescription geneDescription;
 
-        for(Method m: clazz.getMethods()) {
+        //getMethods() comes back in no particular order, and it can change between builds or even runs.
+        //Opcodes have to mean the same thing every time (a genome is just numbers), so go by name.
+        Method[] methods = clazz.getMethods();
+        Arrays.sort(methods, Comparator.comparing(Method::getName));
+
+        for(Method m: methods) {
 
             if(m.isAnnotationPresent(GeneCommand.class)) {
                 gene = new Gene();
@@ -114,8 +138,11 @@ public class Gene {
                 gene.cost = geneInfo.cost();
                 gene.weight = geneInfo.weight();
                 gene.bonus = geneInfo.bonus();
-                gene.numParameters = geneInfo.args(); //I'm aware that there's a difference between parameters and arguments but refuse to change this
+                gene.numParameters = m.getParameterCount(); //I'm aware that there's a difference between parameters and arguments but refuse to change this
+                if(geneInfo.args() != gene.numParameters) System.err.println("Gene mismatch: " + m.getName() + " claims " + geneInfo.args() + " arguments but takes " + gene.numParameters);
                 gene.defined = geneInfo.defined();
+                gene.idempotent = geneInfo.idempotent();
+                if(! gene.bind(clazz)) continue;
                 result[index] = gene;
                 index++;
 
@@ -132,6 +159,41 @@ public class Gene {
         return result;
     }
 
+    //Generate a class that calls the gene's method directly, implementing whichever interface fits how many arguments it takes.
+    private boolean bind(Class<? extends GeneticRobot> clazz) {
+        Class<?>[] interfaces = {Nullary.class, Unary.class, Binary.class, Ternary.class};
+        if(numParameters >= interfaces.length) {
+            System.err.println("Gene mismatch: " + meaning.getName() + " takes " + numParameters + " arguments; genes take at most 3");
+            return false;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle target = lookup.unreflect(meaning);
+            Class<?> type = interfaces[numParameters];
+            MethodType erased = target.type().changeParameterType(0, GeneticRobot.class);
+            MethodType exact = target.type().changeParameterType(0, clazz);
+            Object invoker = LambdaMetafactory.metafactory(lookup, "run", MethodType.methodType(type), erased, target, exact)
+                    .getTarget().invoke();
+
+            switch(numParameters) {
+                case 0: nullary = (Nullary) invoker; break;
+                case 1: unary = (Unary) invoker; break;
+                case 2: binary = (Binary) invoker; break;
+                default: ternary = (Ternary) invoker; break;
+            }
+            return true;
+        } catch (Throwable t) {
+            System.err.println("Gene mismatch: couldn't bind " + meaning.getName() + " (" + t + ")");
+            return false;
+        }
+    }
+
+    public void invoke(GeneticRobot robot) { nullary.run(robot); }
+    public void invoke(GeneticRobot robot, int arg0) { unary.run(robot, arg0); }
+    public void invoke(GeneticRobot robot, int arg0, int arg1) { binary.run(robot, arg0, arg1); }
+    public void invoke(GeneticRobot robot, int arg0, int arg1, int arg2) { ternary.run(robot, arg0, arg1, arg2); }
+
     @Override
     public String toString() {
         return (meaning == null? "[no meaning]" : meaning.getName().substring(1));
@@ -183,5 +245,6 @@ public class Gene {
         return bonus;
     }
     public boolean isDefined() {return defined;}
+    public boolean isIdempotent() {return idempotent;}
 
 }
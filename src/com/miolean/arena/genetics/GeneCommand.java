@@ -14,4 +14,6 @@ public @interface GeneCommand{
     int weight();
     int bonus() default 0;
     boolean defined() default false;
+    //Running it twice in a row with the same arguments does nothing more than running it once.
+    boolean idempotent() default false;
 }
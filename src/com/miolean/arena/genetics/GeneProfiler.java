@@ -0,0 +1,148 @@
+package com.miolean.arena.genetics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Counts, for every opcode, how often robots run it, how many cogs that costs them (its own cost plus
+ * whatever the gene spends itself), and roughly how long it takes. Meant for deciding which genes are
+ * worth making faster, or weighting differently in @GeneCommand.
+ *
+ * Only timing every instruction would cost far more than the instructions themselves, so one in every
+ * SAMPLE_RATE is timed and the rest are assumed to take about as long.
+ *
+ * Each thread that runs genes counts into a Stripe of its own, so nobody has to wait for anyone else or
+ * fight over cache lines. An Arena adds the stripes up every INTERVAL ticks (see aggregate()), between
+ * ticks, while its own threads are idle. That's what the Debug tab and the CSV show, so they can be up
+ * to INTERVAL ticks behind. Islands on other threads may still be counting while that happens; the totals
+ * are only ever a little behind for it.
+ *
+ * Turned off, none of this happens: runGenes() checks isEnabled() once per run, and that's all.
+ */
+public final class GeneProfiler {
+
+    //How many ticks an Arena waits between adding up the stripes.
+    public static final int INTERVAL = 100;
+    //Time one instruction in this many.
+    private static final int SAMPLE_RATE = 64;
+    private static final int OPCODES = 256;
+
+    //Only ever set between ticks, by the thread that then starts everyone thinking.
+    private static boolean enabled = false;
+
+    private static final List<Stripe> stripes = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Stripe> local = ThreadLocal.withInitial(() -> {
+        Stripe stripe = new Stripe();
+        stripes.add(stripe);
+        return stripe;
+    });
+
+    //Bumped by reset(), for every stripe to clear itself the next time its thread uses it.
+    private static volatile int epoch = 0;
+    private static volatile Profile latest = new Profile();
+
+    private GeneProfiler() {}
+
+    //One thread's counts, indexed by opcode.
+    public static final class Stripe {
+        private final long[] executions = new long[OPCODES];
+        private final double[] cogs = new double[OPCODES];
+        private final long[] nanos = new long[OPCODES];
+        private final long[] samples = new long[OPCODES];
+        private int countdown = SAMPLE_RATE;
+        private int epoch = GeneProfiler.epoch;
+
+        private Stripe() {}
+
+        //Whether to time the next instruction.
+        public boolean sample() {
+            if(--countdown > 0) return false;
+            countdown = SAMPLE_RATE;
+            return true;
+        }
+
+        public void count(int opcode, double cogsUsed) {
+            executions[opcode]++;
+            cogs[opcode] += cogsUsed;
+        }
+
+        public void time(int opcode, long nanoseconds) {
+            nanos[opcode] += nanoseconds;
+            samples[opcode]++;
+        }
+
+        private void clear() {
+            Arrays.fill(executions, 0);
+            Arrays.fill(cogs, 0);
+            Arrays.fill(nanos, 0);
+            Arrays.fill(samples, 0);
+        }
+    }
+
+    //Everyone's counts added up, as of the last aggregate().
+    public static final class Profile {
+        public final long[] executions = new long[OPCODES];
+        public final double[] cogs = new double[OPCODES];
+        public final long[] nanos = new long[OPCODES];
+        public final long[] samples = new long[OPCODES];
+
+        private Profile() {}
+
+        //Roughly how long everything that ran [opcode] took altogether, going by the samples.
+        public long estimatedNanos(int opcode) {
+            return (samples[opcode] == 0)? 0: (long) ((double) nanos[opcode] / samples[opcode] * executions[opcode]);
+        }
+    }
+
+    public static boolean isEnabled() { return enabled; }
+    public static void setEnabled(boolean enabled) { GeneProfiler.enabled = enabled; }
+
+    //This thread's stripe, to count into for one run of a robot's genes.
+    public static Stripe stripe() {
+        Stripe stripe = local.get();
+        if(stripe.epoch != epoch) {
+            stripe.clear();
+            stripe.epoch = epoch;
+        }
+        return stripe;
+    }
+
+    public static synchronized void aggregate() {
+        Profile profile = new Profile();
+        for(Stripe stripe: stripes) {
+            if(stripe.epoch != epoch) continue; //Hasn't counted anything since the last reset
+            for(int i = 0; i < OPCODES; i++) {
+                profile.executions[i] += stripe.executions[i];
+                profile.cogs[i] += stripe.cogs[i];
+                profile.nanos[i] += stripe.nanos[i];
+                profile.samples[i] += stripe.samples[i];
+            }
+        }
+        latest = profile;
+    }
+
+    //Start counting from zero again.
+    public static synchronized void reset() {
+        epoch++;
+        latest = new Profile();
+    }
+
+    public static Profile getProfile() { return latest; }
+
+    //The last aggregate() as CSV, one row per opcode that ran at all.
+    public static void writeCsv(Writer out, Gene[] kmem) throws IOException {
+        Profile profile = latest;
+        out.write("opcode,gene,executions,cogs,sampled_ns,samples,estimated_ns,ns_per_execution\n");
+        for(int i = 0; i < OPCODES; i++) {
+            if(profile.executions[i] == 0) continue;
+            long estimate = profile.estimatedNanos(i);
+            out.write(String.format(Locale.ROOT, "%d,%s,%d,%.3f,%d,%d,%d,%.1f\n", i, (i < kmem.length && kmem[i] != null)? kmem[i]: "",
+                    profile.executions[i], profile.cogs[i], profile.nanos[i], profile.samples[i], estimate,
+                    (double) estimate / profile.executions[i]));
+        }
+    }
+}
@@ -37,7 +37,7 @@ public class EntityInput extends Input {
 
             int mouseRow = (MouseInfo.getPointerInfo().getLocation().y - getLocationOnScreen().y - 8) / ROW_HEIGHT;
 
-            for(Entity e: ((Arena) arena.getValue()).getEntities().values()) {
+            for(Entity e: ((Arena) arena.getValue()).getShownEntities()) {
 
                 if(row == mouseRow) {
                     g.setColor(Color.blue);
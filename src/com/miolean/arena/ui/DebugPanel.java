@@ -1,22 +1,64 @@
 package com.miolean.arena.ui;
 
+import com.miolean.arena.entities.GeneticRobot;
 import com.miolean.arena.framework.Debug;
+import com.miolean.arena.genetics.GeneProfiler;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 public class DebugPanel extends JPanel {
 
+    //How many genes the profile shows, most time spent first.
+    private static final int PROFILE_ROWS = 40;
+
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
         Debug.drawDebugLog(g);
-        setPreferredSize(new Dimension(400, 3000));
+        if(GeneProfiler.isEnabled()) drawProfile(g, 340, 30);
+        setPreferredSize(new Dimension(GeneProfiler.isEnabled()? 720: 400, 3000));
     }
 
     public void updateInfo() {
-        setPreferredSize(new Dimension(400, 3000));
+        setPreferredSize(new Dimension(GeneProfiler.isEnabled()? 720: 400, 3000));
         Debug.refresh();
         repaint();
     }
+
+    //The gene profiler's latest counts, as a table.
+    private void drawProfile(Graphics g, int x, int y) {
+        GeneProfiler.Profile profile = GeneProfiler.getProfile();
+
+        List<Integer> opcodes = new ArrayList<>();
+        for(int i = 0; i < profile.executions.length; i++) if(profile.executions[i] > 0) opcodes.add(i);
+        opcodes.sort(Comparator.comparingLong((Integer i) -> profile.estimatedNanos(i)).reversed());
+
+        long total = 0;
+        for(int i: opcodes) total += profile.estimatedNanos(i);
+
+        g.setColor(Color.black);
+        g.drawString("Gene", x, y);
+        g.drawString("Runs", x + 90, y);
+        g.drawString("Cogs", x + 170, y);
+        g.drawString("ns/run", x + 240, y);
+        g.drawString("Time", x + 300, y);
+
+        for(int row = 0; row < opcodes.size() && row < PROFILE_ROWS; row++) {
+            int i = opcodes.get(row);
+            long estimate = profile.estimatedNanos(i);
+            int line = y + 15 * (row + 1);
+
+            g.setColor(Color.getHSBColor(((i * 79) % 256)/255.0f, 200/255.0f, 200/255.0f));
+            if(total > 0) g.fillRect(x + 300, line - 10, (int) (60 * estimate / total), 10);
+            g.setColor(Color.black);
+            g.drawString(String.valueOf(GeneticRobot.KMEM[i]), x, line);
+            g.drawString(String.valueOf(profile.executions[i]), x + 90, line);
+            g.drawString(String.format("%.1f", profile.cogs[i]), x + 170, line);
+            g.drawString(String.format("%.1f", (double) estimate / profile.executions[i]), x + 240, line);
+        }
+    }
 }
@@ -7,7 +7,6 @@ import javax.swing.event.HyperlinkListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
 
 public class EntityPanel extends JPanel implements ActionListener{
 
@@ -129,11 +128,7 @@ public class EntityPanel extends JPanel implements ActionListener{
             }
         } else if(comboBox.getSelectedIndex() == INDEX_ENTITIES) {
 
-            java.util.List<Entity> entities = new ArrayList<>(arena.getEntities().values());
-
-            for (int i = 0; i < entities.size(); i++) {
-                if(entities.get(i) == null) continue;
-                Entity e = entities.get(i);
+            for (Entity e: arena.getShownEntities()) {
                 result += e.toHTML() + "<br/>";
 
             }
@@ -1,6 +1,7 @@
 package com.miolean.arena.ui;
 
 import com.miolean.arena.entities.Arena;
+import com.miolean.arena.entities.GeneticRobot;
 import com.miolean.arena.entities.Robot;
 
 import javax.swing.*;
@@ -71,9 +72,10 @@ public class EvolutionPanel extends JPanel{
     void updateInfo() {
         String result = "";
 
-        for(int i = arena.getTopRobots().size()-1; i >= 0; i--) {
-            Robot t = arena.getTopRobots().get(i);
-            result += "<p><b>[" + (10-i) + "]</b>  ";
+        java.util.List<GeneticRobot> top = arena.getTopRobots();
+        for(int i = top.size()-1; i >= 0; i--) {
+            Robot t = top.get(i);
+            result += "<p><b>[" + (top.size()-i) + "]</b>  ";
             result += t.toHTML();
             result += "</p>";
         }
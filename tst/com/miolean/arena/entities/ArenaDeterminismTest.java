@@ -0,0 +1,57 @@
+package com.miolean.arena.entities;
+
+import com.miolean.arena.framework.Option;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A seeded Arena has to play out the same way however many threads its robots think on.
+ * If any gene reaches outside its own robot during the think phase, or draws from a random
+ * stream it doesn't own, the hashes drift apart within a few hundred ticks.
+ */
+class ArenaDeterminismTest {
+
+    private static final long SEED = 42;
+    private static final int TICKS = 3000;
+
+    private final int threads = Option.tickThreads.getValue();
+
+    @AfterEach
+    void restoreThreads() {
+        Option.tickThreads.setValue(threads);
+    }
+
+    @Test
+    void sameHashOnOneAndEightThreads() throws IOException {
+        assertEquals(String.format("%016x", run(1)), String.format("%016x", run(8)));
+    }
+
+    @Test
+    void sameHashTwiceOnOneThread() throws IOException {
+        assertEquals(run(1), run(1));
+    }
+
+    private static long run(int threads) throws IOException {
+        Option.tickThreads.setValue(threads);
+
+        //Set up the way Headless does for "robots=gen/cain.ergo".
+        try(Arena arena = new Arena(SEED)) {
+            SplittableRandom placement = new SplittableRandom(SEED);
+            try(InputStream in = Arena.class.getClassLoader().getResourceAsStream("gen/cain.ergo")) {
+                Robot robot = new DefaultGeneticRobot(in, arena);
+                robot.setX(Arena.BORDER + (Arena.ARENA_SIZE - 2 * Arena.BORDER) * placement.nextDouble());
+                robot.setY(Arena.BORDER + (Arena.ARENA_SIZE - 2 * Arena.BORDER) * placement.nextDouble());
+                arena.add(robot);
+            }
+
+            for(int i = 0; i < TICKS; i++) arena.updateAll();
+            return arena.stateHash();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.miolean.arena.entities;
+
+import com.miolean.arena.genetics.Gene;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * A compiled page has to leave a robot exactly as the interpreter would: same cogs, same place in the
+ * program, same memory. Each test runs one program on two otherwise identical robots, one of them with
+ * its pages compiled up front, and compares the two afterwards.
+ */
+class CompiledPageTest {
+
+    private static final long SEED = 42;
+    private static final int NOWHERE = 255; //A P page no test robot has, so writing to it does nothing (for a cost)
+
+    @Test
+    void straightRun() throws IOException {
+        assertSameEitherWay(100,
+                page(op("_IMOV", 1, 5), op("_IMOV", 2, 7), op("_IMOV", 1, 9), op("_IPSTO", NOWHERE, 0, 0)));
+    }
+
+    @Test
+    void writeToItsOwnPage() throws IOException {
+        //Rewrites the immediates of two instructions further on before they're reached.
+        assertSameEitherWay(100,
+                page(op("_IMOV", 10, 0), op("_IMOV", 11, 15), op("_IMOV", 12, 99), op("_PSTO", 10, 11, 12),
+                     op("_IMOV", 3, 42), op("_IPSTO", 0, 22, 77), op("_IMOV", 4, 1)));
+    }
+
+    @Test
+    void jumpToAnotherPage() throws IOException {
+        assertSameEitherWay(100,
+                page(op("_IMOV", 1, 1), op("_SWAP", 1, 3, 0), op("_IMOV", 1, 2)),
+                page(op("_IMOV", 2, 1), op("_IMOV", 2, 2), op("_IPSTO", 1, 0, 0), op("_IMOV", 3, 3)));
+    }
+
+    @Test
+    void runOutOfCogsInALoop() throws IOException {
+        assertSameEitherWay(1,
+                page(op("_IPSTO", NOWHERE, 0, 0), op("_IMOV", 1, 1), op("_IGOTO", 0)));
+    }
+
+    @Test
+    void runOutOfCogsAnywhere() throws IOException {
+        //Enough instructions to span several blocks, stopped after each of them in turn.
+        byte[][] ops = new byte[60][];
+        for(int i = 0; i < ops.length; i++) ops[i] = op("_IPSTO", NOWHERE, 0, 0);
+        byte[] page = page(ops);
+
+        for(int i = 0; i <= ops.length; i++) assertSameEitherWay(GeneticRobot.DIFFICULTY + 0.01 * i - 0.005, page);
+    }
+
+    @Test
+    void geneThrows() throws IOException {
+        //_OPOSX finds the robot by its handle, then looks up one past it, which nobody has.
+        assertSameEitherWay(100,
+                page(op("_UUID", 0), op("_OPOSX", 2, 0), op("_IMOV", 3, 1), op("_OPOSX", 4, 0), op("_IMOV", 3, 2)));
+    }
+
+    private static void assertSameEitherWay(double cogs, byte[]... pages) throws IOException {
+        try(Arena interpreting = new Arena(SEED); Arena compiling = new Arena(SEED)) {
+            GeneticRobot interpreted = robot(interpreting, pages);
+            GeneticRobot compiled = robot(compiling, pages);
+            for(int i = 0; i < pages.length; i++) {
+                DecodedPage page = compiled.decodedProgram(i);
+                page.compiled = PageCompiler.compile(page);
+                assertNotNull(page.compiled);
+            }
+
+            interpreted.setCogs(cogs);
+            compiled.setCogs(cogs);
+            interpreted.runGenes(interpreted.PMEM);
+            compiled.runGenes(compiled.PMEM);
+
+            assertEquals(interpreted.getCogs(), compiled.getCogs());
+            assertEquals(interpreted.index, compiled.index);
+            assertEquals(interpreted.loaded, compiled.loaded);
+            assertArrayEquals(interpreted.WMEM, compiled.WMEM);
+            for(int i = 0; i < pages.length; i++) assertArrayEquals(interpreted.PMEM[i], compiled.PMEM[i]);
+        }
+    }
+
+    //A robot with nothing in P memory but [pages], sitting in [arena] so it has a gene handle.
+    private static GeneticRobot robot(Arena arena, byte[][] pages) throws IOException {
+        GeneticRobot robot;
+        try(InputStream in = Arena.class.getClassLoader().getResourceAsStream("gen/cain.ergo")) {
+            robot = new DefaultGeneticRobot(in, arena);
+        }
+        robot.setX(Arena.ARENA_SIZE / 2);
+        robot.setY(Arena.ARENA_SIZE / 2);
+        arena.add(robot);
+
+        for(int i = 0; i < robot.PMEM.length; i++) robot.dropMemory(robot.PMEM, i);
+        for(int i = 0; i < pages.length; i++) {
+            robot.createMemory(robot.PMEM, i);
+            System.arraycopy(pages[i], 0, robot.PMEM[i], 0, pages[i].length);
+        }
+        return robot;
+    }
+
+    //Instructions laid end to end, and the rest of the page left empty.
+    private static byte[] page(byte[]... ops) {
+        byte[] page = new byte[256];
+        int at = 0;
+        for(byte[] op: ops) {
+            System.arraycopy(op, 0, page, at, op.length);
+            at += op.length;
+        }
+        return page;
+    }
+
+    //The gene named [name] and its arguments, as it would sit in a page.
+    private static byte[] op(String name, int... args) {
+        for(int opcode = 0; opcode < GeneticRobot.KMEM.length; opcode++) {
+            Gene gene = GeneticRobot.KMEM[opcode];
+            if(gene == null || !gene.getMeaning().getName().equals(name)) continue;
+
+            byte[] op = new byte[1 + args.length];
+            op[0] = (byte) opcode;
+            for(int i = 0; i < args.length; i++) op[i + 1] = (byte) args[i];
+            return op;
+        }
+        throw new IllegalArgumentException("No gene " + name);
+    }
+}